@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+/**
+ * Time limits of an action, that can be polled cheaply by the player. The hard
+ * limit is derived from the remaining game-time: the player loses the game if
+ * it does not return before it. The soft limit is the suggested end of the
+ * action, it can be set by the player. Both limits are measured in wall time
+ * by {@link System#nanoTime()} from the start of the action, that is not less
+ * than the CPU time, which is charged by the engine.
+ * <p>
+ * The engine stops the deadline when it does not wait for the action any more,
+ * then the hard limit is expired.
+ */
+public final class Deadline {
+
+  /** part of the remaining game-time, that is not used by the hard limit, in ms */
+  public static final long MARGIN = 10;
+  /** the default soft limit is the remaining game-time divided by this */
+  public static final int MOVES_TO_GO = 20;
+  /** game-time that is not used by the budget of a search, the engine charges CPU time in ticks, in ms */
+  public static final long RESERVE = 250;
+
+  private final long start;
+  private final long remaining;
+  private long soft;
+  private long hard;
+  private volatile boolean isStopped;
+
+  /**
+   * Deadline of an action starting now.
+   * @param remaining remaining game-time in ms
+   */
+  public Deadline(long remaining) {
+    start = System.nanoTime();
+    this.remaining = remaining;
+    hard = start + Math.max(0, remaining - MARGIN) * 1000000;
+    soft = Math.min(hard, start + remaining / MOVES_TO_GO * 1000000);
+  }
+
+  /**
+   * @return start of the action by {@link System#nanoTime()}
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return remaining game-time at the start of the action in ms
+   */
+  public long getRemainingTime() {
+    return remaining;
+  }
+
+  /**
+   * Sets the soft limit, it can not be later than the hard limit.
+   * @param millis time from the start of the action in ms
+   */
+  public void setSoftLimit(long millis) {
+    soft = Math.min(hard, start + millis * 1000000);
+  }
+
+  /**
+   * Brings the hard limit earlier, the soft limit is not later than it.
+   * @param millis time from the start of the action in ms
+   */
+  public void setHardLimit(long millis) {
+    hard = Math.min(hard, start + millis * 1000000);
+    soft = Math.min(soft, hard);
+  }
+
+  /**
+   * Returns the time of a search, that is the remaining game-time without the
+   * reserve divided by {@link #MOVES_TO_GO}.
+   * @param reserve game-time that is not used by the search in ms
+   * @return time of the search in ms
+   */
+  public long getBudget(long reserve) {
+    return Math.max(0, remaining - reserve) / MOVES_TO_GO;
+  }
+
+  /**
+   * Sets the soft limit to the time of a search, and the hard limit to twice
+   * of it.
+   * @param reserve game-time that is not used by the search in ms
+   * @see #getBudget(long)
+   */
+  public void setBudget(long reserve) {
+    long budget = getBudget(reserve);
+    setSoftLimit(budget);
+    setHardLimit(2 * budget);
+  }
+
+  /**
+   * @return remaining game-time now in ms
+   */
+  public long getTimeLeft() {
+    return remaining - (System.nanoTime() - start) / 1000000;
+  }
+
+  /**
+   * @return soft limit by {@link System#nanoTime()}
+   */
+  public long getSoftLimit() {
+    return soft;
+  }
+
+  /**
+   * @return hard limit by {@link System#nanoTime()}
+   */
+  public long getHardLimit() {
+    return hard;
+  }
+
+  /**
+   * Checks whether the suggested time of the action is over.
+   * @return true, if a new step of the computation should not be started
+   */
+  public boolean isSoftExpired() {
+    return isStopped || soft <= System.nanoTime();
+  }
+
+  /**
+   * Checks whether the action has to be returned immediately.
+   * @return true, if the hard limit is over or the deadline is stopped
+   */
+  public boolean isHardExpired() {
+    return isStopped || hard <= System.nanoTime();
+  }
+
+  /**
+   * Stops the deadline, the action is not waited for any more.
+   */
+  public void stop() {
+    isStopped = true;
+  }
+
+  /**
+   * @return true, if the deadline is stopped
+   */
+  public boolean isStopped() {
+    return isStopped;
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+/**
+ * Optional interface of the players, that want to poll the time limits of
+ * their actions instead of waiting for the interruption by the engine.
+ */
+public interface DeadlineAware {
+  /**
+   * Sets the deadline of the next action of the player before it is
+   * requested. The deadline is started right before the action.
+   * @param deadline time limits of the action
+   */
+  public void setDeadline(Deadline deadline);
+}
@@ -17,35 +17,60 @@
  */
 package game.engine;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import game.engine.log.ActionCodec;
+import game.engine.log.AsyncGameLogService;
+import game.engine.log.AsyncGameLogWriter;
+import game.engine.log.GameLog;
+import game.engine.log.GameLogReader;
+import game.engine.log.LegacyGameLogReader;
 import game.engine.ui.DrawTask;
 import game.engine.ui.Drawable;
 import game.engine.ui.GameApplication;
 import game.engine.utils.ActionTask;
 import game.engine.utils.ConstructionTask;
+import game.engine.utils.CpuMeter;
+import game.engine.utils.OutputCapture;
 import game.engine.utils.Pair;
-import game.engine.utils.StringBufferOutputStream;
 import game.engine.utils.TimeOutTask;
 import javafx.application.Platform;
 
+/**
+ * Plays a game by the game class and the parameters. The state of an engine
+ * is per instance, so more engines can play concurrently in one JVM. The
+ * output of the players is captured per engine by {@link OutputCapture}.
+ * The actions of {@link BlockingPlayer} players can be computed on virtual
+ * threads, the other players use platform threads, their CPU time is measured.
+ * In the thread metering mode each player has a {@link CpuMeter}, and the CPU
+ * time of the threads created by its factory is charged to the player too.
+ * Players, that implement {@link AutoCloseable}, are closed when the game ends.
+ * The engines of a {@link MatchScheduler} share its executors and the thread
+ * of their logs, a single engine has its own ones.
+ */
 public final class Engine {
   
-  private static boolean isDebug;
+  private final boolean isDebug;
   private final double fps;
   
   private final Game<Player<Action>, Action> game;
@@ -54,49 +79,169 @@ public final class Engine {
   private static final PrintStream defaultOut = System.out;
   private static final PrintStream defaultErr = System.err;
 
-  private static final StringBuffer sbOut = new StringBuffer();
-  private static final StringBuffer sbErr = new StringBuffer();
-  private static final PrintStream userOut = new PrintStream(new StringBufferOutputStream(sbOut));
-  private static final PrintStream userErr = new PrintStream(new StringBufferOutputStream(sbErr));
+  private final OutputCapture capture = new OutputCapture();
 
-  private static final ActionTask actionTask = new ActionTask();
-  private static final ExecutorService service = Executors.newCachedThreadPool();
+  private final ActionTask actionTask = new ActionTask();
+  private final ExecutorService service;
+  /** executor of the blocking players, null if they use the service */
+  private final ExecutorService virtualService;
+  /** true, if the executors are created by the engine and shut down by it */
+  private final boolean ownsExecutors;
+  /** limits the computing players of the engines sharing it, can be null */
+  private Semaphore playerPermits;
+  /** CPU and wall time of the finished actions of the players in nanoseconds */
+  private final long[] cpuTimes;
+  private final long[] wallTimes;
+  /** CPU and wall time of the actions of the players in nanoseconds */
+  private final long[][] actionCpuTimes;
+  private final long[][] actionWallTimes;
+  private final int[] actions;
+  /** meters of the players in the thread metering mode, null otherwise */
+  private final Map<Object, CpuMeter> meters;
+  /** number of the threads of a player */
+  private final int playerThreads;
+  /** engine that constructs its game on the current thread */
+  private static final ThreadLocal<Engine> constructing = new ThreadLocal<Engine>();
+  /** number of the logs created by the engines of the process */
+  private static final AtomicLong logs = new AtomicLong();
   
   private final String ofName;
+  private final boolean isReplay;
+  /** writer of the games, that implement {@link ActionCodec} */
+  private AsyncGameLogWriter writer;
+  private GameLogReader reader;
+  private ActionCodec<Action> codec;
   private ObjectOutputStream oos;
-  private ObjectInputStream ois;
+  private LegacyGameLogReader legacyReader;
   static {
     ManagementFactory.getThreadMXBean().setThreadCpuTimeEnabled(true);
+    OutputCapture.install();
   }
 
-  @SuppressWarnings("unchecked")
   public Engine(double fps, String gameClass, String[] params) throws Exception {
-    long postfix = System.nanoTime() % (long)1E9;
-    boolean isReplay = false;
+    this(fps, gameClass, params, false);
+  }
+
+  /**
+   * Creates the engine of the specified game.
+   * @param fps frames per second of the drawing, 0 for no drawing and debug
+   * @param gameClass game class or log file to replay
+   * @param params game parameters
+   * @param useVirtualThreads if true, the {@link BlockingPlayer} players are
+   * called on virtual threads, that need Java 21
+   * @throws Exception if the game can not be created
+   */
+  public Engine(double fps, String gameClass, String[] params, boolean useVirtualThreads) throws Exception {
+    this(fps, gameClass, params, useVirtualThreads, false);
+  }
+
+  /**
+   * Creates the engine of the specified game.
+   * @param fps frames per second of the drawing, 0 for no drawing and debug
+   * @param gameClass game class or log file to replay
+   * @param params game parameters
+   * @param useVirtualThreads if true, the {@link BlockingPlayer} players are
+   * called on virtual threads, that need Java 21
+   * @param meterThreads if true, the players are charged for the CPU time of
+   * the threads created by {@link CpuMeter#threadFactory()}
+   * @throws Exception if the game can not be created
+   */
+  public Engine(double fps, String gameClass, String[] params, boolean useVirtualThreads, boolean meterThreads) throws Exception {
+    this(fps, gameClass, params, useVirtualThreads, meterThreads, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates the engine of the specified game.
+   * @param fps frames per second of the drawing, 0 for no drawing and debug
+   * @param gameClass game class or log file to replay
+   * @param params game parameters
+   * @param useVirtualThreads if true, the {@link BlockingPlayer} players are
+   * called on virtual threads, that need Java 21
+   * @param meterThreads if true, the players are charged for the CPU time of
+   * the threads created by {@link CpuMeter#threadFactory()}
+   * @param playerThreads number of the threads, that a player can compute on,
+   * see {@link #getPlayerThreads()}
+   * @throws UnsupportedOperationException if virtual threads are requested,
+   * but the JVM does not support them
+   * @throws Exception if the game can not be created
+   */
+  public Engine(double fps, String gameClass, String[] params, boolean useVirtualThreads, boolean meterThreads, int playerThreads) throws Exception {
+    this(fps, gameClass, params, meterThreads, playerThreads, null, useVirtualThreads ? newVirtualThreadExecutor() : null, null);
+  }
+
+  /**
+   * Creates the engine of the specified game, that uses the specified
+   * executors and log service, if they are set. The engine does not shut down
+   * the executors, that it did not create.
+   * @param fps frames per second of the drawing, 0 for no drawing and debug
+   * @param gameClass game class or log file to replay
+   * @param params game parameters
+   * @param meterThreads if true, the players are charged for the CPU time of
+   * the threads created by {@link CpuMeter#threadFactory()}
+   * @param playerThreads number of the threads, that a player can compute on
+   * @param service executor of the players, or null to create one, then the
+   * engine shuts down both executors when the game ends
+   * @param virtualService executor of the blocking players, or null to use the
+   * executor of the players
+   * @param logService thread of the log, or null to start one
+   * @throws Exception if the game can not be created
+   */
+  @SuppressWarnings("unchecked")
+  Engine(double fps, String gameClass, String[] params, boolean meterThreads, int playerThreads, ExecutorService service, ExecutorService virtualService, AsyncGameLogService logService) throws Exception {
     this.fps = fps;
-    Engine.isDebug = 0.0 < fps;
+    this.playerThreads = Math.max(1, playerThreads);
+    isDebug = 0.0 < fps;
+    ownsExecutors = service == null;
+    this.service = service == null ? Executors.newCachedThreadPool() : service;
+    this.virtualService = virtualService;
+    meters = meterThreads ? new IdentityHashMap<Object, CpuMeter>() : null;
     File f = new File(gameClass);
-    ofName = "gameplay_" + postfix + ".data";
+    isReplay = f.exists();
     // read game from file to replay
-    if (f.exists()) {
-      ois = new ObjectInputStream(new FileInputStream(f));
-      gameClass = (String)ois.readObject();
-      params = (String[])ois.readObject();
-      isReplay = true;
+    if (isReplay) {
+      ofName = f.getName();
+      if (GameLog.isGameLog(f)) {
+        reader = new GameLogReader(f);
+        gameClass = reader.getGameClass();
+        params = reader.getParams();
+      } else {
+        legacyReader = new LegacyGameLogReader(f);
+        gameClass = legacyReader.getGameClass();
+        params = legacyReader.getParams();
+      }
+    } else if (ActionCodec.class.isAssignableFrom(Class.forName(gameClass))) {
+      File log = newLogFile(GameLog.EXTENSION);
+      ofName = log.getName();
+      writer = new AsyncGameLogWriter(log, gameClass, params, AsyncGameLogWriter.DEFAULT_CAPACITY, logService);
     } else {
-      oos = new ObjectOutputStream(new FileOutputStream(ofName));
+      File log = newLogFile(".data");
+      ofName = log.getName();
+      oos = new ObjectOutputStream(new FileOutputStream(log));
       oos.writeObject(gameClass);
       oos.writeObject(params);
     }
     
-    if (!isDebug) {
-      System.setOut(userOut);
-      System.setErr(userErr);
+    // the game constructs the players by the construct method of this engine
+    constructing.set(this);
+    try {
+      game = (Game<Player<Action>, Action>) Class.forName(gameClass).getConstructor(PrintStream.class, String[].class, boolean.class).newInstance(new Object[] {defaultErr, params, isReplay});
+    } catch (Exception e) {
+      shutdownExecutors();
+      closeLog();
+      throw e;
+    } finally {
+      constructing.remove();
+    }
+    if (writer != null || reader != null) {
+      codec = (ActionCodec<Action>) game;
     }
-    
-    game = (Game<Player<Action>, Action>) Class.forName(gameClass).getConstructor(PrintStream.class, String[].class, boolean.class).newInstance(new Object[] {defaultErr, params, isReplay});
     players = game.getPlayers();
     prevActions = new List[players.length];
+    cpuTimes = new long[players.length];
+    wallTimes = new long[players.length];
+    actionCpuTimes = new long[players.length][64];
+    actionWallTimes = new long[players.length][64];
+    actions = new int[players.length];
     for (int i = 0; i < players.length; i++) {
       prevActions[i] = new LinkedList<Pair<Integer, Action>>();
     }
@@ -105,8 +250,24 @@ public final class Engine {
     }
   }
 
-  @SuppressWarnings("unchecked")
   public void play() throws Exception {
+    try {
+      playGame();
+    } finally {
+      // the players and the executors are stopped and the logged moves are written even if the game fails
+      closePlayers();
+      shutdownExecutors();
+      closeLog();
+    }
+    if (!isReplay) {
+      defaultErr.println("logfile: " + ofName);
+      if (isDebug && writer != null) {
+        defaultOut.println("LOG: " + writer.getRecords() + " records, " + writer.size() + " bytes, max. queue depth: " + writer.getMaxQueueDepth() + ", flushes: " + writer.getFlushes());
+      }
+    }
+  }
+
+  private void playGame() throws Exception {
     GameApplication gApp = null;
     DrawTask drawTask = null;
     boolean isDrawable = game instanceof Drawable;
@@ -134,14 +295,31 @@ public final class Engine {
         defaultOut.println("CURRENT: " + currentPlayer + " SCORE: " + game.getScore(currentPlayer) + " REM.TIME: " + remaining + " ms");
       }
 
-      // timer for taking action based on the remaining time
       List<Pair<Integer, Action>> prevAction = prevActions[currentPlayer.getColor()];
-      actionTask.setParams(currentPlayer, prevAction);
-      Pair<Action, Long> result = timeOutTask(actionTask, remaining + 1);
-      // we are in replay mode
-      if (oos == null) {
-        Object o = ois.readObject();
-        result = (Pair<Action, Long>) o;
+      Pair<Action, Long> result;
+      if (isReplay) {
+        // the recorded action is set, the players are not called
+        result = readAction();
+      } else {
+        // timer for taking action based on the remaining time
+        actionTask.setParams(currentPlayer, prevAction, remaining, meters == null ? null : meters.get(currentPlayer));
+        // blocking players do not use a core while they are waiting
+        boolean isBlocking = currentPlayer instanceof BlockingPlayer;
+        Semaphore permits = isBlocking ? null : playerPermits;
+        if (permits != null) {
+          permits.acquire();
+        }
+        try {
+          ExecutorService executor = isBlocking && virtualService != null ? virtualService : service;
+          result = timeOutTask(executor, isDebug ? null : capture, actionTask, remaining + 1);
+        } finally {
+          // a player still computing after a time-out can see it
+          actionTask.stop();
+          if (permits != null) {
+            permits.release();
+          }
+        }
+        addTimes(currentPlayer.getColor(), actionTask.getCpuElapsed(), actionTask.getWallElapsed());
       }
       Action currentAction = result.first;
       elapsed = result.second;
@@ -155,7 +333,9 @@ public final class Engine {
       }
       
       // log current action
-      if (oos != null) {
+      if (writer != null) {
+        writer.writeAction(codec.encode(currentAction), elapsed);
+      } else if (oos != null) {
         oos.writeObject(result);
       }
 
@@ -189,22 +369,192 @@ public final class Engine {
       defaultOut.println(i + " " + players[i] + " " + game.getScore(players[i]) + " " + game.getRemainingTime(players[i]));
     }
     
-    service.shutdown();
     if (isDebug && isDrawable) {
       gApp.close();
     }
     
-    System.setOut(defaultOut);
-    System.setErr(defaultErr);
-    if (oos != null) {
+    double[] scores = new double[players.length];
+    long[] remainingTimes = new long[players.length];
+    for (int i = 0; i < players.length; i++) {
+      scores[i] = game.getScore(players[i]);
+      remainingTimes[i] = game.getRemainingTime(players[i]);
+    }
+    if (writer != null) {
+      writer.close(scores, remainingTimes);
+    } else if (oos != null) {
       oos.writeObject("end");
+    } else if (reader != null && (reader.next() || !Arrays.equals(scores, reader.getScores()))) {
+      defaultErr.println("REPLAY MISMATCH, recorded scores: " + Arrays.toString(reader.getScores()));
+    }
+  }
+
+  private Pair<Action, Long> readAction() throws Exception {
+    if (reader != null) {
+      if (!reader.next()) {
+        throw new EOFException("the log ends before the game: " + ofName);
+      }
+      return new Pair<Action, Long>(codec.decode(reader.getCode()), reader.getElapsed());
+    }
+    Pair<Action, Long> result = legacyReader.next();
+    if (result == null) {
+      throw new EOFException("the log ends before the game: " + ofName);
+    }
+    return result;
+  }
+
+  /**
+   * Closes the players, that implement {@link AutoCloseable}, so they can
+   * release their threads and memory.
+   */
+  private void closePlayers() {
+    for (Player<Action> player : players) {
+      if (player instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) player).close();
+        } catch (Exception e) {
+          e.printStackTrace(defaultErr);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the times of a finished action of the specified player.
+   */
+  private void addTimes(int color, long cpu, long wall) {
+    cpuTimes[color] += cpu;
+    wallTimes[color] += wall;
+    int n = actions[color]++;
+    if (n == actionCpuTimes[color].length) {
+      actionCpuTimes[color] = Arrays.copyOf(actionCpuTimes[color], n << 1);
+      actionWallTimes[color] = Arrays.copyOf(actionWallTimes[color], n << 1);
+    }
+    actionCpuTimes[color][n] = cpu;
+    actionWallTimes[color][n] = wall;
+  }
+
+  private void shutdownExecutors() {
+    if (ownsExecutors) {
+      service.shutdown();
+      if (virtualService != null) {
+        virtualService.shutdown();
+      }
+    }
+  }
+
+  private void closeLog() throws IOException {
+    if (writer != null) {
+      writer.close();
+    } else if (oos != null) {
       oos.close();
-      defaultErr.println("logfile: " + ofName);
-    } else {
-      ois.close();
+    } else if (reader != null) {
+      reader.close();
+    } else if (legacyReader != null) {
+      legacyReader.close();
     }
   }
 
+  /**
+   * Returns the game of the engine.
+   * @return the game
+   */
+  public Game<Player<Action>, Action> getGame() {
+    return game;
+  }
+
+  /**
+   * Returns the players of the game.
+   * @return the players
+   */
+  public Player<Action>[] getPlayers() {
+    return players;
+  }
+
+  /**
+   * Returns the writer of the binary log.
+   * @return writer or null if the game is replayed or logged by serialization
+   */
+  public AsyncGameLogWriter getLogWriter() {
+    return writer;
+  }
+
+  /**
+   * Returns whether the blocking players are called on virtual threads.
+   * @return false, if virtual threads were not requested
+   */
+  public boolean isUsingVirtualThreads() {
+    return virtualService != null;
+  }
+
+  /**
+   * Returns whether the players are charged for the CPU time of their metered
+   * threads.
+   * @return true in the thread metering mode
+   */
+  public boolean isMeteringThreads() {
+    return meters != null;
+  }
+
+  /**
+   * Sets the semaphore, that limits the number of the players computing
+   * concurrently in the engines sharing it. A permit is held during each
+   * action of a player, except the {@link BlockingPlayer} players.
+   * @param playerPermits semaphore or null for no limit
+   */
+  public void setPlayerPermits(Semaphore playerPermits) {
+    this.playerPermits = playerPermits;
+  }
+
+  /**
+   * Returns the CPU (user) time of the finished actions of the specified
+   * player, as it was measured for the game-time.
+   * @param color color of the player
+   * @return CPU time in nanoseconds
+   */
+  public long getCpuTime(int color) {
+    return cpuTimes[color];
+  }
+
+  /**
+   * Returns the wall time of the finished actions of the specified player.
+   * @param color color of the player
+   * @return wall time in nanoseconds
+   */
+  public long getWallTime(int color) {
+    return wallTimes[color];
+  }
+
+  /**
+   * Returns the CPU times of the finished actions of the specified player in
+   * the order of the actions.
+   * @param color color of the player
+   * @return CPU times in nanoseconds
+   */
+  public long[] getActionCpuTimes(int color) {
+    return Arrays.copyOf(actionCpuTimes[color], actions[color]);
+  }
+
+  /**
+   * Returns the wall times of the finished actions of the specified player in
+   * the order of the actions.
+   * @param color color of the player
+   * @return wall times in nanoseconds
+   */
+  public long[] getActionWallTimes(int color) {
+    return Arrays.copyOf(actionWallTimes[color], actions[color]);
+  }
+
+  /**
+   * Returns the number of the threads, that the player constructed on the
+   * current thread can compute on. Multi-threaded players should call it in
+   * their constructors, it is the number of the cores given to the game by
+   * {@link MatchScheduler}, or the number of the processors by default.
+   * @return number of threads, at least 1
+   */
+  public static int getPlayerThreads() {
+    return ConstructionTask.getThreads();
+  }
+
   public static void main(String[] args) throws Exception {
     if (args.length < 2) {
       System.err.println("required parameters for the engine are:");
@@ -225,11 +575,11 @@ public final class Engine {
       engine = new Engine(fps, gameClass, params);
     } catch (Exception e) {
       e.printStackTrace(defaultErr);
-      service.shutdown();
       return;
     }
 
     Game<Player<Action>, Action> game = engine.game;
+    boolean isDebug = engine.isDebug;
     Thread tDraw = null;
     if (isDebug && game instanceof Drawable) {
       final Drawable drawable = (Drawable) game;
@@ -248,22 +598,55 @@ public final class Engine {
     System.exit(0);
   }
 
+  /**
+   * Calls the specified task with the specified timeout. The task is called by
+   * the engine, that constructs its game on the current thread, or without
+   * output capture if there is no such engine.
+   * @param task to be called
+   * @param timeout in milliseconds
+   * @return result of the task (null on time-out) and the elapsed time
+   */
   public static final <R> Pair<R, Long> timeOutTask(TimeOutTask<R> task, long timeout) {
-    Future<R> future = service.submit(task);
+    Engine engine = constructing.get();
+    if (engine != null) {
+      return timeOutTask(engine.service, engine.isDebug ? null : engine.capture, task, timeout);
+    }
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    try {
+      return timeOutTask(service, null, task, timeout);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  private static final <R> Pair<R, Long> timeOutTask(ExecutorService service, final OutputCapture capture, final TimeOutTask<R> task, long timeout) {
+    Future<R> future = service.submit(new Callable<R>() {
+      @Override
+      public R call() throws Exception {
+        if (capture != null) {
+          capture.bind();
+        }
+        try {
+          return task.call();
+        } finally {
+          OutputCapture.unbind();
+        }
+      }
+    });
     R result = null;
     long elapsed = 0;
     try {
       result = future.get(timeout + 1, TimeUnit.MILLISECONDS);
       elapsed = task.getElapsed();
     } catch (Throwable e) {
-      e.printStackTrace();
+      e.printStackTrace(capture == null ? System.err : capture.getErrStream());
       elapsed = timeout + 1;
     } finally {
       future.cancel(true);
     }
-    if (!isDebug && (sbOut.length() > 0 || sbErr.length() > 0)) {
+    if (capture != null && !capture.isEmpty()) {
       elapsed = timeout + 1;
-      cleanOut();
+      cleanOut(capture);
     }
     return new Pair<R, Long>(result, elapsed);
   }
@@ -271,16 +654,56 @@ public final class Engine {
   public static final <R> Pair<R, Long> construct(long timeout, Constructor<R> constructor, Object... params) throws Exception {
     ConstructionTask<R> task = new ConstructionTask<R>();
     task.setConstructor(constructor, params);
+    Engine engine = constructing.get();
+    CpuMeter meter = engine == null || engine.meters == null ? null : new CpuMeter();
+    task.setMeter(meter);
+    task.setThreads(engine == null ? Runtime.getRuntime().availableProcessors() : engine.playerThreads);
     Pair<R, Long> result = timeOutTask(task, timeout + 1);
+    if (meter != null && result.first != null) {
+      engine.meters.put(result.first, meter);
+    }
     return result;
   }
   
-  private static final void cleanOut() {
+  /**
+   * Creates an executor, that starts a virtual thread for each task. Virtual
+   * threads are available from Java 21, the executor is looked up by
+   * reflection, so the engine runs on older JVMs too, if virtual threads are
+   * not requested.
+   * @return executor
+   * @throws UnsupportedOperationException if virtual threads are not supported
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (Exception e) {
+      throw new UnsupportedOperationException("virtual threads are not supported by Java " + System.getProperty("java.version") + ", Java 21 is needed", e);
+    }
+  }
+
+  /**
+   * Creates an empty log file in the working directory, whose name is not
+   * used by any other file, so the logs of concurrent games do not overwrite
+   * each other.
+   * @param extension extension of the file name
+   * @return new file
+   * @throws IOException if the file can not be created
+   */
+  private static File newLogFile(String extension) throws IOException {
+    while (true) {
+      File file = new File("gameplay_" + System.nanoTime() % (long)1E9 + "_" + logs.incrementAndGet() + extension);
+      if (file.createNewFile()) {
+        return file;
+      }
+    }
+  }
+
+  private static final void cleanOut(OutputCapture capture) {
     defaultOut.println("Writing is permited!");
-    defaultOut.println("USER.OUT:\n" + sbOut);
-    defaultOut.println("USER.ERR:\n" + sbErr);
-    sbOut.delete(0, sbOut.length());
-    sbErr.delete(0, sbErr.length());
+    defaultOut.println("USER.OUT:\n" + capture.getOut());
+    defaultOut.println("USER.ERR:\n" + capture.getErr());
+    capture.clear();
   }
 
 }
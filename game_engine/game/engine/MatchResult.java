@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+import java.util.Arrays;
+
+/**
+ * Result of a game played by {@link MatchScheduler}: the scores and the
+ * measured times of the players, and the wall time and CPU time ratios of
+ * the actions, that spent at least {@link MatchScheduler#MIN_CPU_TIME}. It
+ * does not refer to the engine, so the players and their memory are released
+ * when the game ends.
+ */
+public final class MatchResult {
+
+  private final double[] scores;
+  private final long[] cpuTimes;
+  private final long[] wallTimes;
+  /** ratios of the checked actions of the players in increasing order */
+  private final double[][] ratios;
+
+  /**
+   * Copies the result of the game of the specified engine.
+   * @param engine engine of a played game
+   */
+  MatchResult(Engine engine) {
+    Player<Action>[] players = engine.getPlayers();
+    scores = new double[players.length];
+    cpuTimes = new long[players.length];
+    wallTimes = new long[players.length];
+    ratios = new double[players.length][];
+    for (int i = 0; i < players.length; i++) {
+      scores[i] = engine.getGame().getScore(players[i]);
+      cpuTimes[i] = engine.getCpuTime(i);
+      wallTimes[i] = engine.getWallTime(i);
+      long[] cpu = engine.getActionCpuTimes(i);
+      long[] wall = engine.getActionWallTimes(i);
+      double[] checked = new double[cpu.length];
+      int n = 0;
+      for (int j = 0; j < cpu.length; j++) {
+        if (MatchScheduler.MIN_CPU_TIME <= cpu[j]) {
+          checked[n++] = (double)wall[j] / cpu[j];
+        }
+      }
+      ratios[i] = Arrays.copyOf(checked, n);
+      Arrays.sort(ratios[i]);
+    }
+  }
+
+  /**
+   * @return the number of the players
+   */
+  public int getPlayers() {
+    return scores.length;
+  }
+
+  /**
+   * Returns the final score of the specified player.
+   * @param color color of the player
+   * @return score, -1 for a time-out
+   */
+  public double getScore(int color) {
+    return scores[color];
+  }
+
+  /**
+   * Returns the CPU (user) time of the actions of the specified player.
+   * @param color color of the player
+   * @return CPU time in nanoseconds
+   */
+  public long getCpuTime(int color) {
+    return cpuTimes[color];
+  }
+
+  /**
+   * Returns the wall time of the actions of the specified player.
+   * @param color color of the player
+   * @return wall time in nanoseconds
+   */
+  public long getWallTime(int color) {
+    return wallTimes[color];
+  }
+
+  /**
+   * Returns the ratio of the wall time and the CPU time of the actions of the
+   * specified player.
+   * @param color color of the player
+   * @return ratio, or 0 if the player has not spent CPU time
+   */
+  public double getRatio(int color) {
+    return cpuTimes[color] == 0 ? 0 : (double)wallTimes[color] / cpuTimes[color];
+  }
+
+  /**
+   * Returns the number of the checked actions of the specified player.
+   * @param color color of the player
+   * @return the number of the actions with enough CPU time
+   */
+  public int getCheckedActions(int color) {
+    return ratios[color].length;
+  }
+
+  /**
+   * Returns the number of the checked actions of the specified player, whose
+   * ratio is higher than the specified limit.
+   * @param color color of the player
+   * @param maxRatio limit of the ratio
+   * @return the number of the contended actions
+   */
+  public int getContendedActions(int color, double maxRatio) {
+    double[] r = ratios[color];
+    int i = r.length;
+    while (0 < i && maxRatio < r[i - 1]) {
+      i--;
+    }
+    return r.length - i;
+  }
+
+  /**
+   * Returns the specified percentile of the ratios of the checked actions of
+   * the specified player by the nearest rank.
+   * @param color color of the player
+   * @param percentile between 0 and 100, 100 for the maximum
+   * @return ratio, or 0 if there are no checked actions
+   */
+  public double getActionRatio(int color, double percentile) {
+    double[] r = ratios[color];
+    if (r.length == 0) {
+      return 0;
+    }
+    int rank = (int)Math.ceil(percentile / 100 * r.length);
+    return r[Math.max(0, Math.min(r.length, rank) - 1)];
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import game.engine.log.AsyncGameLogService;
+
+/**
+ * Plays games concurrently within a budget of cores. A game is started when
+ * the cores it needs are free, and the number of concurrently computing
+ * players of all games can be limited as well.
+ * <p>
+ * The game-time is measured as CPU time, that does not grow while a thread is
+ * waiting for a core. The ratio of the wall time and the CPU time of an
+ * action shows this waiting, so a game is reported as contended if the ratio
+ * of an action is higher than the limit. The ratio is meaningful for the
+ * actions of single-threaded compute-bound players only, that spend enough
+ * CPU time.
+ * <p>
+ * With virtual threads, the games are played on virtual threads without
+ * admission, so many games can wait for {@link BlockingPlayer} players at
+ * once. Then the budget limits the concurrently computing players instead.
+ * <p>
+ * The engines of the games share the executor of the players and the thread,
+ * that writes their logs, so the number of the platform threads does not grow
+ * with the number of the games.
+ */
+public final class MatchScheduler {
+
+  /** default limit of the wall time and CPU time ratio */
+  public static final double DEFAULT_MAX_RATIO = 1.5;
+  /** actions with less CPU time are not checked, in nanoseconds */
+  public static final long MIN_CPU_TIME = 10000000L;
+
+  private final int budget;
+  private final Semaphore cores;
+  private final Semaphore playerPermits;
+  private final double maxRatio;
+  private final boolean useVirtualThreads;
+  private final boolean meterThreads;
+  private final ExecutorService games;
+  /** executors of the players and the blocking players of all games */
+  private final ExecutorService players;
+  private final ExecutorService blockingPlayers;
+  private final AsyncGameLogService logs = new AsyncGameLogService();
+  private boolean isShutdown;
+
+  /**
+   * Creates a scheduler for the specified budget.
+   * @param budget number of cores for the games
+   * @param playerThreads maximal number of concurrently computing players, 0 for no limit
+   * @param maxRatio limit of the wall time and CPU time ratio of a player
+   */
+  public MatchScheduler(int budget, int playerThreads, double maxRatio) {
+    this(budget, playerThreads, maxRatio, false);
+  }
+
+  /**
+   * Creates a scheduler for the specified budget.
+   * @param budget number of cores for the games or for the computing players
+   * @param playerThreads maximal number of concurrently computing players, 0 for no limit
+   * @param maxRatio limit of the wall time and CPU time ratio of a player
+   * @param useVirtualThreads if true, the games and the blocking players are
+   * run on virtual threads, that need Java 21
+   * @throws UnsupportedOperationException if virtual threads are requested,
+   * but the JVM does not support them
+   */
+  public MatchScheduler(int budget, int playerThreads, double maxRatio, boolean useVirtualThreads) {
+    this(budget, playerThreads, maxRatio, useVirtualThreads, false);
+  }
+
+  /**
+   * Creates a scheduler for the specified budget.
+   * @param budget number of cores for the games or for the computing players
+   * @param playerThreads maximal number of concurrently computing players, 0 for no limit
+   * @param maxRatio limit of the wall time and CPU time ratio of a player
+   * @param useVirtualThreads if true, the games and the blocking players are
+   * run on virtual threads, that need Java 21
+   * @param meterThreads if true, the players are charged for the CPU time of
+   * their metered threads, see {@link Engine#isMeteringThreads()}
+   * @throws UnsupportedOperationException if virtual threads are requested,
+   * but the JVM does not support them
+   */
+  public MatchScheduler(int budget, int playerThreads, double maxRatio, boolean useVirtualThreads, boolean meterThreads) {
+    this.budget = budget;
+    this.meterThreads = meterThreads;
+    this.maxRatio = maxRatio;
+    this.useVirtualThreads = useVirtualThreads;
+    if (useVirtualThreads) {
+      cores = null;
+      playerThreads = playerThreads <= 0 ? budget : Math.min(playerThreads, budget);
+      games = Engine.newVirtualThreadExecutor();
+      blockingPlayers = Engine.newVirtualThreadExecutor();
+    } else {
+      cores = new Semaphore(budget, true);
+      games = Executors.newFixedThreadPool(budget);
+      blockingPlayers = null;
+    }
+    players = Executors.newCachedThreadPool();
+    playerPermits = playerThreads <= 0 ? null : new Semaphore(playerThreads, true);
+  }
+
+  /**
+   * Submits a game, that needs one core.
+   * @param gameClass game class
+   * @param params game parameters
+   * @return the result of the played game
+   */
+  public Future<MatchResult> submit(String gameClass, String[] params) {
+    return submit(gameClass, params, 1);
+  }
+
+  /**
+   * Submits a game, that needs the specified number of cores, for example if a
+   * player computes on more threads. The players can compute on so many
+   * threads, see {@link Engine#getPlayerThreads()}. The weight is not used
+   * for the admission with virtual threads.
+   * @param gameClass game class
+   * @param params game parameters
+   * @param weight number of cores, at most the budget
+   * @return the result of the played game
+   */
+  public Future<MatchResult> submit(final String gameClass, final String[] params, int weight) {
+    final int permits = Math.max(1, Math.min(weight, budget));
+    return games.submit(new Callable<MatchResult>() {
+      @Override
+      public MatchResult call() throws Exception {
+        if (cores != null) {
+          cores.acquire(permits);
+        }
+        try {
+          Engine engine = new Engine(0, gameClass, params, meterThreads, permits, players, blockingPlayers, logs);
+          engine.setPlayerPermits(playerPermits);
+          engine.play();
+          // the engine and its players are not kept
+          return new MatchResult(engine);
+        } finally {
+          if (cores != null) {
+            cores.release(permits);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the limit of the wall time and CPU time ratio of an action.
+   * @return ratio limit
+   */
+  public double getMaxRatio() {
+    return maxRatio;
+  }
+
+  /**
+   * Checks whether an action of the specified game was waiting for a core
+   * more than the limit allows.
+   * @param result result of a played game
+   * @return true, if the results of the game are not comparable to the
+   * results of a game played alone
+   */
+  public boolean isContended(MatchResult result) {
+    for (int i = 0; i < result.getPlayers(); i++) {
+      if (0 < result.getContendedActions(i, maxRatio)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops accepting games, the submitted games are played.
+   */
+  public void shutdown() {
+    games.shutdown();
+    closeWhenTerminated();
+  }
+
+  /**
+   * Stops the games.
+   */
+  public void shutdownNow() {
+    games.shutdownNow();
+    closeWhenTerminated();
+  }
+
+  /**
+   * Shuts down the shared executors and the log service, when the games are
+   * finished.
+   */
+  private synchronized void closeWhenTerminated() {
+    if (isShutdown) {
+      return;
+    }
+    isShutdown = true;
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (!games.awaitTermination(1, TimeUnit.MINUTES)) {
+            // the games are still running
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        players.shutdown();
+        if (blockingPlayers != null) {
+          blockingPlayers.shutdown();
+        }
+        logs.close();
+      }
+    }, "MatchScheduler-shutdown");
+    thread.setDaemon(true);
+    thread.start();
+  }
+}
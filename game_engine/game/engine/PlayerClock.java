@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+/**
+ * Deadlines of the actions of a {@link DeadlineAware} player. The deadline set
+ * by the engine is used if there is one, otherwise the player is assumed to
+ * have the game-time that it did not use from {@link #DEFAULT_TIME}.
+ */
+public final class PlayerClock {
+
+  /** game-time that is assumed without the deadlines of the engine, in ms */
+  public static final long DEFAULT_TIME = 5000;
+
+  private long remaining = DEFAULT_TIME;
+  private Deadline next;
+  private Deadline current;
+
+  /**
+   * Sets the deadline of the next action, as received by
+   * {@link DeadlineAware#setDeadline(Deadline)}.
+   * @param deadline time limits of the action
+   */
+  public void setDeadline(Deadline deadline) {
+    next = deadline;
+  }
+
+  /**
+   * Starts an action of the player.
+   * @return deadline of the action
+   */
+  public Deadline start() {
+    current = next == null ? new Deadline(remaining) : next;
+    next = null;
+    return current;
+  }
+
+  /**
+   * Ends the action started last, its time is subtracted from the game-time.
+   */
+  public void end() {
+    remaining = current.getTimeLeft();
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a tournament of two-player games in one JVM without drawing.
+ * Every ordered pair of the specified players plays a game with every seed of
+ * the specified range, so each pairing is played with both colors. The games
+ * get the seed, the game-time and the two player classes as parameters, like
+ * the {@link game.mc.MCGame} game. The games are played concurrently by a
+ * {@link MatchScheduler}, every game with the same number of cores. The
+ * aggregate results and the games, where an action of a player was waiting
+ * for a core too much, are printed at the end with the wall time and CPU time
+ * ratios of the actions.
+ */
+public final class Tournament {
+
+  private final String gameClass;
+  private final long firstSeed;
+  private final long lastSeed;
+  private final long time;
+  private final MatchScheduler scheduler;
+  private final String[] playerClasses;
+  /** number of cores of a game */
+  private final int weight;
+
+  /** points, game-scores and the number of games, wins, draws, losses and time-outs of the players */
+  private final double[] points;
+  private final double[] scores;
+  private final int[][] stats;
+  /** points of the row player against the column player */
+  private final double[][] crossTable;
+  /** CPU and wall time of the players in nanoseconds */
+  private final long[] cpuTimes;
+  private final long[] wallTimes;
+  /** maximal wall time and CPU time ratio of the checked actions of the players */
+  private final double[] maxRatios;
+  private final List<String> contended = new ArrayList<String>();
+  private int failed;
+
+  public Tournament(String gameClass, long firstSeed, long lastSeed, long time, MatchScheduler scheduler, String[] playerClasses) {
+    this(gameClass, firstSeed, lastSeed, time, scheduler, playerClasses, 1);
+  }
+
+  /**
+   * Creates a tournament, whose games need the specified number of cores.
+   * @param gameClass game class
+   * @param firstSeed first seed
+   * @param lastSeed last seed
+   * @param time game-time of the players
+   * @param scheduler scheduler of the games
+   * @param playerClasses player classes
+   * @param weight number of cores of a game, see {@link MatchScheduler#submit(String, String[], int)}
+   */
+  public Tournament(String gameClass, long firstSeed, long lastSeed, long time, MatchScheduler scheduler, String[] playerClasses, int weight) {
+    this.weight = weight;
+    this.gameClass = gameClass;
+    this.firstSeed = firstSeed;
+    this.lastSeed = lastSeed;
+    this.time = time;
+    this.scheduler = scheduler;
+    this.playerClasses = playerClasses;
+    points = new double[playerClasses.length];
+    scores = new double[playerClasses.length];
+    stats = new int[playerClasses.length][5];
+    crossTable = new double[playerClasses.length][playerClasses.length];
+    cpuTimes = new long[playerClasses.length];
+    wallTimes = new long[playerClasses.length];
+    maxRatios = new double[playerClasses.length];
+  }
+
+  /**
+   * Plays all games of the tournament, and collects the results.
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void play() throws InterruptedException {
+    List<int[]> pairings = new ArrayList<int[]>();
+    List<Future<MatchResult>> results = new ArrayList<Future<MatchResult>>();
+    try {
+      for (long seed = firstSeed; seed <= lastSeed; seed++) {
+        for (int i = 0; i < playerClasses.length; i++) {
+          for (int j = 0; j < playerClasses.length; j++) {
+            if (i != j) {
+              pairings.add(new int[] {i, j, (int)(seed - firstSeed)});
+              results.add(scheduler.submit(gameClass, new String[] {Long.toString(seed), Long.toString(time), playerClasses[i], playerClasses[j]}, weight));
+            }
+          }
+        }
+      }
+      for (int k = 0; k < results.size(); k++) {
+        try {
+          add(pairings.get(k), results.get(k).get());
+          results.set(k, null);
+        } catch (ExecutionException e) {
+          e.getCause().printStackTrace();
+          failed++;
+        }
+      }
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Adds the result of the specified game.
+   * @param pairing indices of the players of the colors and the seed offset
+   * @param game result of the played game
+   */
+  private void add(int[] pairing, MatchResult game) {
+    double[] result = new double[2];
+    for (int c = 0; c < 2; c++) {
+      // -1 for a time-out
+      result[c] = game.getScore(c);
+      cpuTimes[pairing[c]] += game.getCpuTime(c);
+      wallTimes[pairing[c]] += game.getWallTime(c);
+      maxRatios[pairing[c]] = Math.max(maxRatios[pairing[c]], game.getActionRatio(c, 100));
+    }
+    if (scheduler.isContended(game)) {
+      StringBuilder sb = new StringBuilder(String.format(Locale.US, "%d", firstSeed + pairing[2]));
+      for (int c = 0; c < 2; c++) {
+        sb.append(String.format(Locale.US, " %s %.2f %.2f %d/%d", playerClasses[pairing[c]], game.getActionRatio(c, 50), game.getActionRatio(c, 100),
+            game.getContendedActions(c, scheduler.getMaxRatio()), game.getCheckedActions(c)));
+      }
+      contended.add(sb.toString());
+    }
+    for (int c = 0; c < 2; c++) {
+      int player = pairing[c];
+      int opponent = pairing[1 - c];
+      double point = result[c] == result[1 - c] ? 0.5 : result[1 - c] < result[c] ? 1 : 0;
+      stats[player][0]++;
+      stats[player][point == 1 ? 1 : point == 0 ? 3 : 2]++;
+      if (result[c] < 0) {
+        stats[player][4]++;
+      } else {
+        scores[player] += result[c];
+      }
+      points[player] += point;
+      crossTable[player][opponent] += point;
+    }
+  }
+
+  /**
+   * Prints the aggregate results and the cross table of the points.
+   */
+  public void print() {
+    System.out.println(String.format(Locale.US, "%-4s %-40s %6s %6s %6s %6s %8s %8s %8s %8s %8s", "#", "PLAYER", "GAMES", "WINS", "DRAWS", "LOSSES", "POINTS", "SCORE", "TIMEOUTS", "WALL/CPU", "MAX W/C"));
+    for (int i = 0; i < playerClasses.length; i++) {
+      System.out.println(String.format(Locale.US, "%-4d %-40s %6d %6d %6d %6d %8.1f %8.2f %8d %8.2f %8.2f", i, playerClasses[i], stats[i][0], stats[i][1], stats[i][2], stats[i][3], points[i], stats[i][0] == 0 ? 0.0 : scores[i] / stats[i][0], stats[i][4], cpuTimes[i] == 0 ? 0.0 : (double)wallTimes[i] / cpuTimes[i], maxRatios[i]));
+    }
+    System.out.println();
+    StringBuilder sb = new StringBuilder(String.format("%-4s", ""));
+    for (int j = 0; j < playerClasses.length; j++) {
+      sb.append(String.format("%8d", j));
+    }
+    System.out.println(sb);
+    for (int i = 0; i < playerClasses.length; i++) {
+      sb = new StringBuilder(String.format("%-4d", i));
+      for (int j = 0; j < playerClasses.length; j++) {
+        sb.append(i == j ? String.format("%8s", "-") : String.format(Locale.US, "%8.1f", crossTable[i][j]));
+      }
+      System.out.println(sb);
+    }
+    if (0 < failed) {
+      System.out.println("FAILED GAMES: " + failed);
+    }
+    if (0 < contended.size()) {
+      System.out.println();
+      System.out.println("CONTENDED GAMES (seed, players with median and max wall/cpu ratios of their actions, contended/checked actions): " + contended.size());
+      for (String game : contended) {
+        System.out.println(game);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int playerThreads = 0;
+    double maxRatio = MatchScheduler.DEFAULT_MAX_RATIO;
+    boolean useVirtualThreads = false;
+    boolean meterThreads = false;
+    int weight = 1;
+    int k = 0;
+    for (; k + 1 < args.length && args[k].startsWith("-"); k++) {
+      if (args[k].equals("-players")) {
+        playerThreads = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-ratio")) {
+        maxRatio = Double.parseDouble(args[++k]);
+      } else if (args[k].equals("-virtual")) {
+        useVirtualThreads = true;
+      } else if (args[k].equals("-meter")) {
+        meterThreads = true;
+      } else if (args[k].equals("-weight")) {
+        weight = Integer.parseInt(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    args = Arrays.copyOfRange(args, k, args.length);
+    if (args.length < 7) {
+      System.err.println("optional parameters for the tournament are:");
+      System.err.println("\t-players <maximal number of concurrently computing players>");
+      System.err.println("\t-ratio <maximal wall time / CPU time ratio of a player>");
+      System.err.println("\t-virtual (play the games and the blocking players on virtual threads)");
+      System.err.println("\t-meter (charge the players for the CPU time of their metered threads)");
+      System.err.println("\t-weight <number of cores of a game, for multi-threaded players>");
+      System.err.println("required parameters for the tournament are:");
+      System.err.println("\t- game class");
+      System.err.println("\t- first seed");
+      System.err.println("\t- last seed");
+      System.err.println("\t- game-time");
+      System.err.println("\t- number of cores for the games");
+      System.err.println("\t- player classes (at least two)");
+      System.exit(1);
+    }
+    MatchScheduler scheduler = null;
+    try {
+      scheduler = new MatchScheduler(Integer.parseInt(args[4]), playerThreads, maxRatio, useVirtualThreads, meterThreads);
+    } catch (UnsupportedOperationException e) {
+      System.err.println("-virtual: " + e.getMessage());
+      System.exit(1);
+    }
+    Tournament tournament = new Tournament(args[0], Long.parseLong(args[1]), Long.parseLong(args[2]), Long.parseLong(args[3]), scheduler, Arrays.copyOfRange(args, 5, args.length), weight);
+    tournament.play();
+    tournament.print();
+    System.exit(0);
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import game.engine.Action;
+
+/**
+ * Encodes the actions of a game into small integer codes for the binary
+ * gameplay log, see {@link GameLog}. Games implementing the codec are logged
+ * in the binary format, the others by Java serialization.
+ * @param <A> type of the actions
+ */
+public interface ActionCodec<A extends Action> {
+  /**
+   * Returns the code of the specified action. Actions, that can not be
+   * encoded, have to be played the same way as the null action.
+   * @param action to be encoded, can be null
+   * @return code between 0 and {@link GameLog#MAX_CODE}, or {@link GameLog#NULL}
+   */
+  public int encode(A action);
+  /**
+   * Returns the action of the specified code.
+   * @param code returned by {@link #encode(Action)}
+   * @return the action, null for {@link GameLog#NULL}
+   */
+  public A decode(int code);
+}
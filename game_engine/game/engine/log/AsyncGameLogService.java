@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread, that writes the records of any number of
+ * {@link AsyncGameLogWriter} logs. A writer queues itself when a record is
+ * passed into its empty ring, the thread is parked without a timeout while
+ * there is nothing to write, and until the next flush is due while there are
+ * written records, that are not flushed.
+ */
+public final class AsyncGameLogService implements Closeable {
+
+  /** writers with records to be written, each one is queued once */
+  private final ConcurrentLinkedQueue<AsyncGameLogWriter> ready = new ConcurrentLinkedQueue<AsyncGameLogWriter>();
+  private final Thread thread;
+  private volatile boolean isClosed;
+
+  /**
+   * Starts the background thread.
+   */
+  public AsyncGameLogService() {
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "AsyncGameLogService");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queues the specified writer and wakes the background thread.
+   */
+  void signal(AsyncGameLogWriter writer) {
+    ready.add(writer);
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Stops the background thread after the queued writers are written. The
+   * writers of the service have to be closed before.
+   */
+  @Override
+  public void close() {
+    isClosed = true;
+    LockSupport.unpark(thread);
+    boolean isInterrupted = false;
+    while (thread.isAlive()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain() {
+    // writers with written records, that are not flushed
+    Set<AsyncGameLogWriter> pending = Collections.newSetFromMap(new IdentityHashMap<AsyncGameLogWriter, Boolean>());
+    while (true) {
+      boolean isLast = isClosed;
+      AsyncGameLogWriter writer;
+      while ((writer = ready.poll()) != null) {
+        if (writer.drain()) {
+          pending.remove(writer);
+        } else {
+          pending.add(writer);
+        }
+      }
+      if (isLast) {
+        return;
+      }
+      long now = System.nanoTime();
+      long wait = Long.MAX_VALUE;
+      for (Iterator<AsyncGameLogWriter> it = pending.iterator(); it.hasNext();) {
+        long due = it.next().flush(now);
+        if (due < 0) {
+          it.remove();
+        } else {
+          wait = Math.min(wait, due);
+        }
+      }
+      if (wait == Long.MAX_VALUE) {
+        LockSupport.park(this);
+      } else {
+        LockSupport.parkNanos(this, wait);
+      }
+    }
+  }
+}
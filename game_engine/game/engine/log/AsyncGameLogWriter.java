@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes a binary gameplay log on a background thread, so the thread of the
+ * game does not wait for the disk. The moves are passed through a bounded
+ * single-producer single-consumer ring without locks, the game thread is the
+ * only producer. The thread of an {@link AsyncGameLogService}, that can be
+ * shared by the logs of many games, drains the ring in groups when it is
+ * woken by the first record of a group, and flushes the written records at
+ * most {@link #FLUSH_INTERVAL} milliseconds later.
+ * {@link #close()} writes and flushes the remaining records, so it has to be
+ * called when the game ends or fails.
+ */
+public final class AsyncGameLogWriter implements Closeable {
+
+  /** default number of the records in the ring */
+  public static final int DEFAULT_CAPACITY = 1024;
+  /** maximal time between two flushes of the written records in milliseconds */
+  public static final long FLUSH_INTERVAL = 100;
+
+  private final GameLogWriter writer;
+  private final int[] codes;
+  private final long[] times;
+  private final int mask;
+  /** index of the next record to be written, advanced by the background thread */
+  private final AtomicLong head = new AtomicLong();
+  /** index of the next free slot, advanced by the game thread */
+  private final AtomicLong tail = new AtomicLong();
+  /** number of the records handed to the file */
+  private volatile long flushed;
+  private volatile long flushes;
+  private volatile int maxDepth;
+  private volatile long producerWaits;
+  private volatile boolean isClosing;
+  private volatile IOException failure;
+  private boolean isClosed;
+  private final AsyncGameLogService service;
+  /** service of the log only, that is closed with it, or null */
+  private final AsyncGameLogService ownService;
+  /** true, if the writer is queued in the service to be drained */
+  private final AtomicBoolean isQueued = new AtomicBoolean();
+  /** released when the service does not write the log any more */
+  private final CountDownLatch done = new CountDownLatch(1);
+  /** time of the last flush by the service */
+  private long lastFlush = System.nanoTime();
+
+  /**
+   * Creates the log file, writes its header and starts a background thread
+   * for the log only.
+   * @param file to be written
+   * @param gameClass game class
+   * @param params game parameters
+   * @throws IOException if the file can not be written
+   */
+  public AsyncGameLogWriter(File file, String gameClass, String[] params) throws IOException {
+    this(file, gameClass, params, DEFAULT_CAPACITY, null);
+  }
+
+  /**
+   * Creates the log file and writes its header.
+   * @param file to be written
+   * @param gameClass game class
+   * @param params game parameters
+   * @param capacity number of the records in the ring, rounded up to a power
+   * of two
+   * @param service background thread of the log, or null to start one for the
+   * log only
+   * @throws IOException if the file can not be written
+   */
+  public AsyncGameLogWriter(File file, String gameClass, String[] params, int capacity, AsyncGameLogService service) throws IOException {
+    writer = new GameLogWriter(file, gameClass, params);
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    codes = new int[size];
+    times = new long[size];
+    mask = size - 1;
+    ownService = service == null ? new AsyncGameLogService() : null;
+    this.service = service == null ? ownService : service;
+  }
+
+  /**
+   * Passes the record of a move to the background thread. Waits only if the
+   * ring is full.
+   * @param code of the action, see {@link ActionCodec}
+   * @param elapsed time of the action in milliseconds
+   * @throws IOException if the background thread failed to write the log
+   */
+  public void writeAction(int code, long elapsed) throws IOException {
+    if (code < 0 || GameLog.MAX_CODE < code && code != GameLog.NULL) {
+      throw new IllegalArgumentException("invalid action code: " + code);
+    }
+    checkFailure();
+    long t = tail.get();
+    if (t - head.get() == codes.length) {
+      producerWaits++;
+      while (t - head.get() == codes.length) {
+        signal();
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        checkFailure();
+      }
+    }
+    int i = (int)t & mask;
+    codes[i] = code;
+    times[i] = elapsed;
+    // publishes the record to the background thread, before the queued flag
+    // is read by signal()
+    tail.set(t + 1);
+    int depth = (int)(t + 1 - head.get());
+    if (maxDepth < depth) {
+      maxDepth = depth;
+    }
+    signal();
+  }
+
+  /**
+   * Writes the remaining records and the trailer, and closes the log.
+   * @param scores final scores of the players
+   * @param remainingTimes final remaining times of the players
+   * @throws IOException if the log can not be written
+   */
+  public void close(double[] scores, long[] remainingTimes) throws IOException {
+    stop();
+    try {
+      checkFailure();
+      writer.writeEnd(scores, remainingTimes);
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Writes the remaining records and closes the log without a trailer, if it
+   * is not closed yet.
+   * @throws IOException if the log can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    stop();
+    isClosed = true;
+    try {
+      writer.close();
+      flushed = head.get();
+    } finally {
+      if (ownService != null) {
+        ownService.close();
+      }
+      checkFailure();
+    }
+  }
+
+  /**
+   * @return the number of the records in the ring
+   */
+  public int getQueueDepth() {
+    return (int)(tail.get() - head.get());
+  }
+
+  /**
+   * @return the maximal number of the records in the ring
+   */
+  public int getMaxQueueDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * @return the number of the records, that are not handed to the file yet
+   */
+  public long getBacklog() {
+    return tail.get() - flushed;
+  }
+
+  /**
+   * @return the number of the records passed to the writer
+   */
+  public long getRecords() {
+    return tail.get();
+  }
+
+  /**
+   * @return the number of the group flushes of the background thread
+   */
+  public long getFlushes() {
+    return flushes;
+  }
+
+  /**
+   * @return the number of the records, that waited for a free slot
+   */
+  public long getProducerWaits() {
+    return producerWaits;
+  }
+
+  /**
+   * @return the number of the written bytes, after the log is closed
+   */
+  public long size() {
+    return writer.size();
+  }
+
+  /**
+   * Queues the writer in the service, if it is not queued yet.
+   */
+  private void signal() {
+    if (!isQueued.get() && isQueued.compareAndSet(false, true)) {
+      service.signal(this);
+    }
+  }
+
+  /**
+   * Waits until the service writes the remaining records.
+   */
+  private void stop() {
+    if (done.getCount() == 0) {
+      return;
+    }
+    isClosing = true;
+    signal();
+    boolean isInterrupted = false;
+    while (done.getCount() != 0) {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    IOException e = failure;
+    if (e != null) {
+      throw new IOException("gameplay log writer failed", e);
+    }
+  }
+
+  /**
+   * Writes the records of the ring, called by the thread of the service.
+   * @return true, if the log is closing and the service does not write it any
+   * more
+   */
+  boolean drain() {
+    // the records passed after this are signalled again
+    isQueued.set(false);
+    if (done.getCount() == 0) {
+      return true;
+    }
+    boolean isLast = isClosing;
+    if (failure == null) {
+      long h = head.get();
+      long t = tail.get();
+      try {
+        for (; h < t; h++) {
+          int i = (int)h & mask;
+          writer.writeAction(codes[i], times[i]);
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+      head.lazySet(h);
+    }
+    if (isLast || failure != null) {
+      done.countDown();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Flushes the written records, if the last flush was {@link #FLUSH_INTERVAL}
+   * milliseconds ago, called by the thread of the service.
+   * @param now current time by {@link System#nanoTime()}
+   * @return nanoseconds until the next flush, or -1 if all the written records
+   * are flushed
+   */
+  long flush(long now) {
+    long h = head.get();
+    if (h <= flushed || done.getCount() == 0) {
+      return -1;
+    }
+    long wait = lastFlush + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL) - now;
+    if (0 < wait) {
+      return wait;
+    }
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      failure = e;
+      done.countDown();
+      return -1;
+    }
+    flushed = h;
+    flushes++;
+    lastFlush = now;
+    return -1;
+  }
+}
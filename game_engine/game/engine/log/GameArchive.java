@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped archive of many games, written by {@link GameArchiveWriter}.
+ * The games are stored in columns, so a query reads the columns it needs only:
+ * <ul>
+ * <li>per game: the seed, the game-time, the game class, the offset of its
+ * player slots and the offset of its moves;</li>
+ * <li>per player slot, that is a player of a game: the player class, the game,
+ * the final score and the final remaining time;</li>
+ * <li>per move: the action code (16 bits) and the elapsed time (32 bits,
+ * clamped);</li>
+ * <li>indexes: the games sorted by their seeds, and the player slots grouped
+ * by the player classes.</li>
+ * </ul>
+ * The color of a player is the index of its slot within the slots of its game.
+ * The strings (game and player classes) are stored once, in a table.
+ * <p>
+ * The header holds the magic bytes, the version, the number of games, slots,
+ * moves and strings, and the file offsets of the sections. The numbers are
+ * stored in big-endian byte order. A section is mapped by one buffer, so it
+ * can be at most 2 GB.
+ */
+public final class GameArchive implements Closeable {
+
+  /** first bytes of an archive: "GARC" */
+  static final int MAGIC = 0x47415243;
+  static final int VERSION = 1;
+
+  static final int STRINGS = 0;
+  static final int SEEDS = 1;
+  static final int TIMES = 2;
+  static final int CLASSES = 3;
+  static final int SLOT_OFFSETS = 4;
+  static final int MOVE_OFFSETS = 5;
+  static final int SLOT_PLAYERS = 6;
+  static final int SLOT_GAMES = 7;
+  static final int SCORES = 8;
+  static final int REMAINING_TIMES = 9;
+  static final int SEED_KEYS = 10;
+  static final int SEED_GAMES = 11;
+  static final int PLAYER_OFFSETS = 12;
+  static final int PLAYER_SLOTS = 13;
+  static final int CODES = 14;
+  static final int ELAPSED = 15;
+  /** number of the sections, the table of the offsets ends with the length */
+  static final int SECTIONS = 16;
+  static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 4 + 8 * (SECTIONS + 1);
+
+  private final FileChannel channel;
+  private final int games;
+  private final int slots;
+  private final long moves;
+  private final String[] strings;
+  private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+  private final LongBuffer seeds;
+  private final LongBuffer times;
+  private final IntBuffer classes;
+  private final IntBuffer slotOffsets;
+  private final LongBuffer moveOffsets;
+  private final IntBuffer slotPlayers;
+  private final IntBuffer slotGames;
+  private final DoubleBuffer scores;
+  private final LongBuffer remainingTimes;
+  private final LongBuffer seedKeys;
+  private final IntBuffer seedGames;
+  private final IntBuffer playerOffsets;
+  private final IntBuffer playerSlots;
+  private final ShortBuffer codes;
+  private final IntBuffer elapsed;
+
+  /**
+   * Opens and maps the specified archive.
+   * @param file archive to be read
+   * @throws IOException if the file can not be read or it is not an archive
+   */
+  public GameArchive(File file) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+      if (header.limit() < HEADER_SIZE || header.getInt() != MAGIC) {
+        throw new IOException("not a game archive: " + file);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("unknown game archive version " + version + ": " + file);
+      }
+      games = header.getInt();
+      slots = header.getInt();
+      moves = header.getLong();
+      strings = new String[header.getInt()];
+      long[] sections = new long[SECTIONS + 1];
+      for (int i = 0; i <= SECTIONS; i++) {
+        sections[i] = header.getLong();
+      }
+      ByteBuffer table = map(sections, STRINGS);
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[table.getInt()];
+        table.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        stringIds.put(strings[i], i);
+      }
+      seeds = map(sections, SEEDS).asLongBuffer();
+      times = map(sections, TIMES).asLongBuffer();
+      classes = map(sections, CLASSES).asIntBuffer();
+      slotOffsets = map(sections, SLOT_OFFSETS).asIntBuffer();
+      moveOffsets = map(sections, MOVE_OFFSETS).asLongBuffer();
+      slotPlayers = map(sections, SLOT_PLAYERS).asIntBuffer();
+      slotGames = map(sections, SLOT_GAMES).asIntBuffer();
+      scores = map(sections, SCORES).asDoubleBuffer();
+      remainingTimes = map(sections, REMAINING_TIMES).asLongBuffer();
+      seedKeys = map(sections, SEED_KEYS).asLongBuffer();
+      seedGames = map(sections, SEED_GAMES).asIntBuffer();
+      playerOffsets = map(sections, PLAYER_OFFSETS).asIntBuffer();
+      playerSlots = map(sections, PLAYER_SLOTS).asIntBuffer();
+      codes = map(sections, CODES).asShortBuffer();
+      elapsed = map(sections, ELAPSED).asIntBuffer();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private ByteBuffer map(long[] sections, int section) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, sections[section], sections[section + 1] - sections[section]);
+  }
+
+  /**
+   * @return the number of games
+   */
+  public int getGames() {
+    return games;
+  }
+
+  /**
+   * @return the number of player slots
+   */
+  public int getSlots() {
+    return slots;
+  }
+
+  /**
+   * @return the number of moves of all games
+   */
+  public long getMoves() {
+    return moves;
+  }
+
+  public long getSeed(int game) {
+    return seeds.get(game);
+  }
+
+  public long getGameTime(int game) {
+    return times.get(game);
+  }
+
+  public String getGameClass(int game) {
+    return strings[classes.get(game)];
+  }
+
+  /**
+   * @param game index of the game
+   * @return the number of the players of the game
+   */
+  public int getPlayers(int game) {
+    return slotOffsets.get(game + 1) - slotOffsets.get(game);
+  }
+
+  /**
+   * Returns the slot of the specified player of the specified game.
+   * @param game index of the game
+   * @param color color of the player
+   * @return index of the slot
+   */
+  public int getSlot(int game, int color) {
+    return slotOffsets.get(game) + color;
+  }
+
+  /**
+   * @param slot index of the slot
+   * @return player class
+   */
+  public String getPlayer(int slot) {
+    return strings[slotPlayers.get(slot)];
+  }
+
+  /**
+   * @param slot index of the slot
+   * @return index of the game
+   */
+  public int getGame(int slot) {
+    return slotGames.get(slot);
+  }
+
+  /**
+   * @param slot index of the slot
+   * @return color of the player in its game
+   */
+  public int getColor(int slot) {
+    return slot - slotOffsets.get(slotGames.get(slot));
+  }
+
+  /**
+   * @param slot index of the slot
+   * @return final score of the player
+   */
+  public double getScore(int slot) {
+    return scores.get(slot);
+  }
+
+  /**
+   * @param slot index of the slot
+   * @return final remaining time of the player
+   */
+  public long getRemainingTime(int slot) {
+    return remainingTimes.get(slot);
+  }
+
+  /**
+   * Returns the result of the player in the specified slot against the best
+   * other player of the game.
+   * @param slot index of the slot
+   * @return positive for a win, 0 for a draw, negative for a loss
+   */
+  public int getResult(int slot) {
+    int game = slotGames.get(slot);
+    double best = Double.NEGATIVE_INFINITY;
+    for (int i = slotOffsets.get(game); i < slotOffsets.get(game + 1); i++) {
+      if (i != slot) {
+        best = Math.max(best, scores.get(i));
+      }
+    }
+    return Double.compare(scores.get(slot), best);
+  }
+
+  /**
+   * @param game index of the game
+   * @return the number of the moves of the game
+   */
+  public int getMoves(int game) {
+    return (int)(moveOffsets.get(game + 1) - moveOffsets.get(game));
+  }
+
+  /**
+   * @param game index of the game
+   * @param move index of the move in the game
+   * @return action code, see {@link ActionCodec}
+   */
+  public int getCode(int game, int move) {
+    return codes.get((int)(moveOffsets.get(game) + move)) & 0xFFFF;
+  }
+
+  /**
+   * @param game index of the game
+   * @param move index of the move in the game
+   * @return elapsed time of the move in milliseconds
+   */
+  public long getElapsed(int game, int move) {
+    return elapsed.get((int)(moveOffsets.get(game) + move));
+  }
+
+  /**
+   * Returns the games of the specified seed by the seed index.
+   * @param seed seed of the games
+   * @return indexes of the games
+   */
+  public int[] findGames(long seed) {
+    int low = 0;
+    int high = games;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (seedKeys.get(mid) < seed) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int end = low;
+    while (end < games && seedKeys.get(end) == seed) {
+      end++;
+    }
+    int[] result = new int[end - low];
+    for (int i = low; i < end; i++) {
+      result[i - low] = seedGames.get(i);
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the slots of the specified player class by the player index.
+   * @param player player class
+   * @return indexes of the slots in the order of the games
+   */
+  public int[] findSlots(String player) {
+    Integer id = stringIds.get(player);
+    if (id == null) {
+      return new int[0];
+    }
+    int from = playerOffsets.get(id);
+    int[] result = new int[playerOffsets.get(id + 1) - from];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = playerSlots.get(from + i);
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("required parameters for the query are:");
+      System.err.println("\t- archive file");
+      System.err.println("optional parameters:");
+      System.err.println("\t-seed <seed>");
+      System.err.println("\t-player <player class>");
+      System.err.println("\t-color <color of the player>");
+      System.err.println("\t-result win|draw|loss (of the player)");
+      System.exit(1);
+    }
+    GameArchive archive = new GameArchive(new File(args[0]));
+    Long seed = null;
+    String player = null;
+    int color = -1;
+    String result = null;
+    for (int k = 1; k + 1 < args.length; k += 2) {
+      if (args[k].equals("-seed")) {
+        seed = Long.parseLong(args[k + 1]);
+      } else if (args[k].equals("-player")) {
+        player = args[k + 1];
+      } else if (args[k].equals("-color")) {
+        color = Integer.parseInt(args[k + 1]);
+      } else if (args[k].equals("-result")) {
+        result = args[k + 1];
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    if (player == null && (0 <= color || result != null)) {
+      System.err.println("-color and -result require -player");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    int[] slots;
+    if (player != null) {
+      slots = archive.findSlots(player);
+    } else {
+      int[] games = seed == null ? null : archive.findGames(seed);
+      int count = games == null ? archive.getGames() : games.length;
+      slots = new int[count];
+      for (int i = 0; i < count; i++) {
+        slots[i] = archive.getSlot(games == null ? i : games[i], 0);
+      }
+    }
+    int matches = 0;
+    for (int slot : slots) {
+      int game = archive.getGame(slot);
+      if (seed != null && archive.getSeed(game) != seed
+          || 0 <= color && archive.getColor(slot) != color
+          || result != null && !result.equals(new String[] {"loss", "draw", "win"}[Integer.signum(archive.getResult(slot)) + 1])) {
+        continue;
+      }
+      matches++;
+      StringBuilder sb = new StringBuilder();
+      sb.append(game).append(" seed: ").append(archive.getSeed(game)).append(" moves: ").append(archive.getMoves(game));
+      for (int i = 0; i < archive.getPlayers(game); i++) {
+        int s = archive.getSlot(game, i);
+        sb.append(" | ").append(archive.getPlayer(s)).append(' ').append(archive.getScore(s)).append(' ').append(archive.getRemainingTime(s));
+      }
+      System.out.println(sb);
+    }
+    System.out.println("matches: " + matches + " of " + archive.getGames() + " games (" + (System.nanoTime() - start) / 1000 + " us)");
+    archive.close();
+    System.exit(0);
+  }
+}
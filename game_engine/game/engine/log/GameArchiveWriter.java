@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs binary gameplay logs into a {@link GameArchive}. The move columns are
+ * streamed into temporary files next to the archive, the per-game columns are
+ * kept in memory, and the archive is written with its indexes when the writer
+ * is closed.
+ */
+public final class GameArchiveWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final File file;
+  private final File codesFile;
+  private final File elapsedFile;
+  private final FileChannel codes;
+  private final FileChannel elapsed;
+  private final ByteBuffer codesBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final ByteBuffer elapsedBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+  private final List<String> strings = new ArrayList<String>();
+  private final Longs seeds = new Longs();
+  private final Longs times = new Longs();
+  private final Ints classes = new Ints();
+  private final Ints slotOffsets = new Ints();
+  private final Longs moveOffsets = new Longs();
+  private final Ints slotPlayers = new Ints();
+  private final Ints slotGames = new Ints();
+  private final Longs scores = new Longs();
+  private final Longs remainingTimes = new Longs();
+  private long moves;
+  private boolean isClosed;
+
+  /**
+   * Creates an empty archive.
+   * @param file archive to be written
+   * @throws IOException if the temporary files can not be created
+   */
+  public GameArchiveWriter(File file) throws IOException {
+    this.file = file;
+    File dir = file.getAbsoluteFile().getParentFile();
+    codesFile = File.createTempFile("codes", ".tmp", dir);
+    elapsedFile = File.createTempFile("elapsed", ".tmp", dir);
+    codes = FileChannel.open(codesFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ);
+    elapsed = FileChannel.open(elapsedFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ);
+    slotOffsets.add(0);
+    moveOffsets.add(0);
+  }
+
+  /**
+   * Adds the specified binary log. The first parameter of the game has to be
+   * the seed, the second one the game-time and the others the player classes.
+   * @param log binary gameplay log with a trailer
+   * @throws IOException if the log can not be read or it is not complete
+   */
+  public void add(File log) throws IOException {
+    GameLogReader reader = new GameLogReader(log);
+    try {
+      String[] params = reader.getParams();
+      long seed;
+      long time;
+      try {
+        seed = Long.parseLong(params[0]);
+        time = Long.parseLong(params[1]);
+      } catch (RuntimeException e) {
+        throw new IOException("the parameters are not seed, game-time and players: " + log);
+      }
+      // the moves are written when the whole log is read
+      Ints logCodes = new Ints();
+      Longs logElapsed = new Longs();
+      while (reader.next()) {
+        logCodes.add(reader.getCode());
+        logElapsed.add(reader.getElapsed());
+      }
+      if (reader.getScores().length != params.length - 2) {
+        throw new IOException("the number of players differs from the parameters: " + log);
+      }
+      for (int i = 0; i < logCodes.size; i++) {
+        if (codesBuffer.remaining() < 2) {
+          flush(codes, codesBuffer);
+        }
+        codesBuffer.putShort((short)logCodes.values[i]);
+        if (elapsedBuffer.remaining() < 4) {
+          flush(elapsed, elapsedBuffer);
+        }
+        elapsedBuffer.putInt((int)Math.min(logElapsed.values[i], Integer.MAX_VALUE));
+      }
+      int game = seeds.size;
+      seeds.add(seed);
+      times.add(time);
+      classes.add(id(reader.getGameClass()));
+      for (int i = 2; i < params.length; i++) {
+        slotPlayers.add(id(params[i]));
+        slotGames.add(game);
+        scores.add(Double.doubleToLongBits(reader.getScores()[i - 2]));
+        remainingTimes.add(reader.getRemainingTimes()[i - 2]);
+      }
+      slotOffsets.add(slotPlayers.size);
+      moves += logCodes.size;
+      moveOffsets.add(moves);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Writes the archive and deletes the temporary files.
+   * @throws IOException if the archive can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    try {
+      flush(codes, codesBuffer);
+      flush(elapsed, elapsedBuffer);
+      write();
+    } finally {
+      codes.close();
+      elapsed.close();
+      codesFile.delete();
+      elapsedFile.delete();
+    }
+  }
+
+  private void write() throws IOException {
+    final int games = seeds.size;
+    int slots = slotPlayers.size;
+    FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    try {
+      long[] sections = new long[GameArchive.SECTIONS + 1];
+      out.position(GameArchive.HEADER_SIZE);
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+      sections[GameArchive.STRINGS] = position(out, buffer);
+      for (String s : strings) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(out, buffer, 4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+      }
+      sections[GameArchive.SEEDS] = writeLongs(out, buffer, seeds.values, games);
+      sections[GameArchive.TIMES] = writeLongs(out, buffer, times.values, games);
+      sections[GameArchive.CLASSES] = writeInts(out, buffer, classes.values, games);
+      sections[GameArchive.SLOT_OFFSETS] = writeInts(out, buffer, slotOffsets.values, games + 1);
+      sections[GameArchive.MOVE_OFFSETS] = writeLongs(out, buffer, moveOffsets.values, games + 1);
+      sections[GameArchive.SLOT_PLAYERS] = writeInts(out, buffer, slotPlayers.values, slots);
+      sections[GameArchive.SLOT_GAMES] = writeInts(out, buffer, slotGames.values, slots);
+      sections[GameArchive.SCORES] = writeLongs(out, buffer, scores.values, slots);
+      sections[GameArchive.REMAINING_TIMES] = writeLongs(out, buffer, remainingTimes.values, slots);
+
+      // the games ordered by their seeds
+      Integer[] order = new Integer[games];
+      for (int i = 0; i < games; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return Long.compare(seeds.values[a], seeds.values[b]);
+        }
+      });
+      long[] seedKeys = new long[games];
+      int[] seedGames = new int[games];
+      for (int i = 0; i < games; i++) {
+        seedKeys[i] = seeds.values[order[i]];
+        seedGames[i] = order[i];
+      }
+      sections[GameArchive.SEED_KEYS] = writeLongs(out, buffer, seedKeys, games);
+      sections[GameArchive.SEED_GAMES] = writeInts(out, buffer, seedGames, games);
+
+      // the slots grouped by their players
+      int[] playerOffsets = new int[strings.size() + 1];
+      for (int i = 0; i < slots; i++) {
+        playerOffsets[slotPlayers.values[i] + 1]++;
+      }
+      for (int i = 0; i < strings.size(); i++) {
+        playerOffsets[i + 1] += playerOffsets[i];
+      }
+      int[] next = Arrays.copyOf(playerOffsets, strings.size());
+      int[] playerSlots = new int[slots];
+      for (int i = 0; i < slots; i++) {
+        playerSlots[next[slotPlayers.values[i]]++] = i;
+      }
+      sections[GameArchive.PLAYER_OFFSETS] = writeInts(out, buffer, playerOffsets, playerOffsets.length);
+      sections[GameArchive.PLAYER_SLOTS] = writeInts(out, buffer, playerSlots, slots);
+
+      sections[GameArchive.CODES] = position(out, buffer);
+      flush(out, buffer);
+      transfer(codes, out);
+      sections[GameArchive.ELAPSED] = out.position();
+      transfer(elapsed, out);
+      sections[GameArchive.SECTIONS] = out.position();
+
+      buffer.putInt(GameArchive.MAGIC);
+      buffer.putInt(GameArchive.VERSION);
+      buffer.putInt(games);
+      buffer.putInt(slots);
+      buffer.putLong(moves);
+      buffer.putInt(strings.size());
+      for (long section : sections) {
+        buffer.putLong(section);
+      }
+      buffer.flip();
+      long position = 0;
+      while (buffer.hasRemaining()) {
+        position += out.write(buffer, position);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private int id(String s) {
+    Integer id = stringIds.get(s);
+    if (id == null) {
+      id = strings.size();
+      stringIds.put(s, id);
+      strings.add(s);
+    }
+    return id;
+  }
+
+  private static long position(FileChannel out, ByteBuffer buffer) throws IOException {
+    return out.position() + buffer.position();
+  }
+
+  private static long writeInts(FileChannel out, ByteBuffer buffer, int[] values, int size) throws IOException {
+    long position = position(out, buffer);
+    for (int i = 0; i < size; i++) {
+      ensure(out, buffer, 4);
+      buffer.putInt(values[i]);
+    }
+    return position;
+  }
+
+  private static long writeLongs(FileChannel out, ByteBuffer buffer, long[] values, int size) throws IOException {
+    long position = position(out, buffer);
+    for (int i = 0; i < size; i++) {
+      ensure(out, buffer, 8);
+      buffer.putLong(values[i]);
+    }
+    return position;
+  }
+
+  private static void ensure(FileChannel out, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(out, buffer);
+      if (buffer.remaining() < bytes) {
+        throw new IOException("too long string in the archive");
+      }
+    }
+  }
+
+  private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void transfer(FileChannel in, FileChannel out) throws IOException {
+    long size = in.size();
+    long position = 0;
+    while (position < size) {
+      position += in.transferTo(position, size - position, out);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("required parameters for the archive are:");
+      System.err.println("\t- archive file");
+      System.err.println("\t- binary log files");
+      System.exit(1);
+    }
+    GameArchiveWriter writer = new GameArchiveWriter(new File(args[0]));
+    int failures = 0;
+    try {
+      for (int i = 1; i < args.length; i++) {
+        try {
+          writer.add(new File(args[i]));
+        } catch (IOException e) {
+          failures++;
+          System.err.println("can not add " + args[i] + ": " + e.getMessage());
+        }
+      }
+    } finally {
+      writer.close();
+    }
+    System.out.println(args[0] + ": " + (args.length - 1 - failures) + " games, " + writer.moves + " moves, " + new File(args[0]).length() + " bytes");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  /** growable int column */
+  private static final class Ints {
+    private int[] values = new int[16];
+    private int size;
+
+    private void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = value;
+    }
+  }
+
+  /** growable long column */
+  private static final class Longs {
+    private long[] values = new long[16];
+    private int size;
+
+    private void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = value;
+    }
+  }
+}
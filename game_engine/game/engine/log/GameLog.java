@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Binary gameplay log format. A log starts with the {@link #MAGIC} bytes and
+ * the {@link #VERSION}, then the header holds the game class and the game
+ * parameters (the parameters of a game hold its seed). Every move is a record
+ * of an unsigned 16-bit action code, see {@link ActionCodec}, and the elapsed
+ * time in milliseconds as a varint. The moves are closed by the {@link #END}
+ * code and a trailer of the final scores and remaining times of the players.
+ * <p>
+ * Strings are stored as a varint length and the UTF-8 bytes, the scores as
+ * doubles, the numbers in big-endian byte order. Varints store 7 bits per
+ * byte from the lowest ones, the highest bit of a byte is set if more bytes
+ * follow.
+ */
+public final class GameLog {
+
+  /** first bytes of a log: "GLOG" */
+  public static final int MAGIC = 0x474C4F47;
+  /** version of the format */
+  public static final int VERSION = 1;
+  /** code of the null action */
+  public static final int NULL = 0xFFFF;
+  /** code closing the moves */
+  public static final int END = 0xFFFE;
+  /** maximal code of an action */
+  public static final int MAX_CODE = 0xFFFD;
+  /** file extension of the binary logs */
+  public static final String EXTENSION = ".glog";
+
+  private GameLog() {
+  }
+
+  /**
+   * Checks whether the specified file starts with the magic bytes.
+   * @param file to be checked
+   * @return true for a binary log
+   * @throws IOException if the file can not be read
+   */
+  public static boolean isGameLog(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      int magic = 0;
+      for (int i = 0; i < 4; i++) {
+        int b = in.read();
+        if (b < 0) {
+          return false;
+        }
+        magic = (magic << 8) | b;
+      }
+      return magic == MAGIC;
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import game.engine.Action;
+import game.engine.Game;
+import game.engine.Player;
+import game.engine.utils.Pair;
+
+/**
+ * Converts gameplay logs of the old serialized format into the binary format.
+ * The game is replayed to compute the trailer of the binary log, so the game
+ * class has to implement {@link ActionCodec}.
+ */
+public final class GameLogConverter {
+
+  private GameLogConverter() {
+  }
+
+  /**
+   * Converts the specified log into the specified binary log.
+   * @param source log of the old format
+   * @param target binary log to be written
+   * @param errStream error stream of the replayed game
+   * @throws Exception if the log can not be read or converted
+   */
+  @SuppressWarnings("unchecked")
+  public static void convert(File source, File target, PrintStream errStream) throws Exception {
+    LegacyGameLogReader reader = new LegacyGameLogReader(source);
+    try {
+      Game<Player<Action>, Action> game = GameReplay.newGame(reader.getGameClass(), reader.getParams(), errStream);
+      if (!(game instanceof ActionCodec)) {
+        throw new IllegalArgumentException("the game has no action codec: " + reader.getGameClass());
+      }
+      ActionCodec<Action> codec = (ActionCodec<Action>) game;
+      GameLogWriter writer = new GameLogWriter(target, reader.getGameClass(), reader.getParams());
+      try {
+        while (!game.isFinished()) {
+          Player<Action> player = game.getNextPlayer();
+          if (player == null) {
+            break;
+          }
+          Pair<Action, Long> result = reader.next();
+          if (result == null) {
+            throw new IOException("the log ends before the game: " + source);
+          }
+          writer.writeAction(codec.encode(result.first), result.second);
+          game.setAction(player, result.first, result.second);
+        }
+        Player<Action>[] players = game.getPlayers();
+        double[] scores = new double[players.length];
+        long[] remainingTimes = new long[players.length];
+        for (int i = 0; i < players.length; i++) {
+          scores[i] = game.getScore(players[i]);
+          remainingTimes[i] = game.getRemainingTime(players[i]);
+        }
+        writer.writeEnd(scores, remainingTimes);
+      } finally {
+        writer.close();
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("required parameters for the converter are:");
+      System.err.println("\t- log files of the old format");
+      System.exit(1);
+    }
+    for (String name : args) {
+      File source = new File(name);
+      String targetName = name.endsWith(".data") ? name.substring(0, name.length() - 5) : name;
+      File target = new File(targetName + GameLog.EXTENSION);
+      try {
+        convert(source, target, System.err);
+        System.out.println(source + " (" + source.length() + " bytes) -> " + target + " (" + target.length() + " bytes)");
+      } catch (Exception e) {
+        System.err.println("can not convert " + source + ": " + e);
+      }
+    }
+    System.exit(0);
+  }
+}
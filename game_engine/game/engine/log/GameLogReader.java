@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary gameplay log, see {@link GameLog}. The header is read by the
+ * constructor, the moves are read one by one by {@link #next()}, and the
+ * trailer is available when the moves are finished.
+ */
+public final class GameLogReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final String gameClass;
+  private final String[] params;
+  private int code;
+  private long elapsed;
+  private double[] scores;
+  private long[] remainingTimes;
+
+  /**
+   * Opens the log file and reads its header.
+   * @param file to be read
+   * @throws IOException if the file can not be read or it is not a log of a
+   * known version
+   */
+  public GameLogReader(File file) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    buffer.flip();
+    try {
+      ensure(5);
+      if (buffer.getInt() != GameLog.MAGIC) {
+        throw new IOException("not a gameplay log: " + file);
+      }
+      int version = buffer.get();
+      if (version != GameLog.VERSION) {
+        throw new IOException("unknown gameplay log version " + version + ": " + file);
+      }
+      gameClass = readString();
+      params = new String[(int)readVarint()];
+      for (int i = 0; i < params.length; i++) {
+        params[i] = readString();
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public String getGameClass() {
+    return gameClass;
+  }
+
+  public String[] getParams() {
+    return params;
+  }
+
+  /**
+   * Reads the next move, or the trailer after the last one.
+   * @return true if a move was read, false at the end of the moves
+   * @throws IOException if the file can not be read or it is truncated
+   */
+  public boolean next() throws IOException {
+    if (scores != null) {
+      return false;
+    }
+    ensure(2);
+    code = buffer.getShort() & 0xFFFF;
+    if (code == GameLog.END) {
+      int players = (int)readVarint();
+      scores = new double[players];
+      remainingTimes = new long[players];
+      for (int i = 0; i < players; i++) {
+        ensure(8);
+        scores[i] = buffer.getDouble();
+        remainingTimes[i] = readVarint();
+      }
+      return false;
+    }
+    elapsed = readVarint();
+    return true;
+  }
+
+  /**
+   * Returns the offset of the next record in the file.
+   * @return file offset
+   * @throws IOException if the file can not be read
+   */
+  public long getPosition() throws IOException {
+    return channel.position() - buffer.remaining();
+  }
+
+  /**
+   * Continues reading at the specified record.
+   * @param position file offset of a record, returned by {@link #getPosition()}
+   * @throws IOException if the file can not be read
+   */
+  public void seek(long position) throws IOException {
+    channel.position(position);
+    buffer.clear();
+    buffer.flip();
+    scores = null;
+    remainingTimes = null;
+  }
+
+  /**
+   * @return code of the last read move
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * @return elapsed time of the last read move in milliseconds
+   */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * @return final scores of the players, null before the end of the moves
+   */
+  public double[] getScores() {
+    return scores;
+  }
+
+  /**
+   * @return final remaining times of the players, null before the end of the
+   * moves
+   */
+  public long[] getRemainingTimes() {
+    return remainingTimes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      buffer.compact();
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException("truncated gameplay log");
+        }
+      }
+      buffer.flip();
+    }
+  }
+
+  private long readVarint() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      ensure(1);
+      byte b = buffer.get();
+      value |= (long)(b & 0x7F) << shift;
+      if (0 <= b) {
+        return value;
+      }
+    }
+    throw new IOException("invalid varint in gameplay log");
+  }
+
+  private String readString() throws IOException {
+    int length = (int)readVarint();
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      ensure(1);
+      int n = Math.min(buffer.remaining(), length - offset);
+      buffer.get(bytes, offset, n);
+      offset += n;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
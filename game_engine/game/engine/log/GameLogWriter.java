@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary gameplay log, see {@link GameLog}. The records are collected
+ * in a buffer, that is written to the file channel when it is full and when
+ * the writer is closed.
+ */
+public final class GameLogWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  /** maximal size of a move record */
+  private static final int RECORD_SIZE = 2 + 10;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private long size;
+
+  /**
+   * Creates the log file and writes its header.
+   * @param file to be written
+   * @param gameClass game class
+   * @param params game parameters
+   * @throws IOException if the file can not be written
+   */
+  public GameLogWriter(File file, String gameClass, String[] params) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    try {
+      buffer.putInt(GameLog.MAGIC);
+      buffer.put((byte)GameLog.VERSION);
+      writeString(gameClass);
+      writeVarint(params.length);
+      for (String param : params) {
+        writeString(param);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the record of a move.
+   * @param code of the action, see {@link ActionCodec}
+   * @param elapsed time of the action in milliseconds
+   * @throws IOException if the file can not be written
+   */
+  public void writeAction(int code, long elapsed) throws IOException {
+    if (code < 0 || GameLog.MAX_CODE < code && code != GameLog.NULL) {
+      throw new IllegalArgumentException("invalid action code: " + code);
+    }
+    ensure(RECORD_SIZE);
+    buffer.putShort((short)code);
+    writeVarint(elapsed);
+  }
+
+  /**
+   * Closes the moves and writes the trailer.
+   * @param scores final scores of the players
+   * @param remainingTimes final remaining times of the players
+   * @throws IOException if the file can not be written
+   */
+  public void writeEnd(double[] scores, long[] remainingTimes) throws IOException {
+    ensure(2);
+    buffer.putShort((short)GameLog.END);
+    writeVarint(scores.length);
+    for (int i = 0; i < scores.length; i++) {
+      ensure(8);
+      buffer.putDouble(scores[i]);
+      writeVarint(remainingTimes[i]);
+    }
+  }
+
+  /**
+   * Returns the number of the written bytes, including the buffered ones.
+   * @return size of the log
+   */
+  public long size() {
+    return size + buffer.position();
+  }
+
+  /**
+   * Writes the buffered records to the file.
+   * @throws IOException if the file can not be written
+   */
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      size += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private void writeVarint(long value) throws IOException {
+    ensure(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte)value);
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(bytes.length);
+    if (buffer.remaining() < bytes.length) {
+      flush();
+    }
+    if (buffer.remaining() < bytes.length) {
+      ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+      while (wrapped.hasRemaining()) {
+        size += channel.write(wrapped);
+      }
+    } else {
+      buffer.put(bytes);
+    }
+  }
+}
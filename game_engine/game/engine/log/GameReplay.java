@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import game.engine.Action;
+import game.engine.Game;
+import game.engine.Player;
+import game.engine.utils.Pair;
+
+/**
+ * Replays gameplay logs without an engine: the recorded actions are set
+ * directly by {@link Game#setAction}, the players are not called. The final
+ * scores are checked against the trailer of a binary log. The remaining times
+ * are not checked, because they depend on the construction times of the
+ * players, that are not logged.
+ */
+public final class GameReplay {
+
+  private final File file;
+  private final double[] scores;
+  private final long[] remainingTimes;
+  private final double[] recordedScores;
+  private final int moves;
+
+  private GameReplay(File file, double[] scores, long[] remainingTimes, double[] recordedScores, int moves) {
+    this.file = file;
+    this.scores = scores;
+    this.remainingTimes = remainingTimes;
+    this.recordedScores = recordedScores;
+    this.moves = moves;
+  }
+
+  /**
+   * Creates the specified game in replay mode.
+   * @param gameClass game class
+   * @param params game parameters
+   * @param errStream error stream of the game
+   * @return the game
+   * @throws Exception if the game can not be created
+   */
+  @SuppressWarnings("unchecked")
+  public static Game<Player<Action>, Action> newGame(String gameClass, String[] params, PrintStream errStream) throws Exception {
+    return (Game<Player<Action>, Action>) Class.forName(gameClass).getConstructor(PrintStream.class, String[].class, boolean.class).newInstance(new Object[] {errStream, params, true});
+  }
+
+  /**
+   * Replays the specified binary or serialized log.
+   * @param file log to be replayed
+   * @param errStream error stream of the game
+   * @return result of the replay
+   * @throws Exception if the log can not be read or the game can not be
+   * created
+   */
+  @SuppressWarnings("unchecked")
+  public static GameReplay replay(File file, PrintStream errStream) throws Exception {
+    if (!GameLog.isGameLog(file)) {
+      LegacyGameLogReader reader = new LegacyGameLogReader(file);
+      try {
+        Game<Player<Action>, Action> game = newGame(reader.getGameClass(), reader.getParams(), errStream);
+        int moves = 0;
+        while (!game.isFinished()) {
+          Player<Action> player = game.getNextPlayer();
+          if (player == null) {
+            break;
+          }
+          Pair<Action, Long> result = reader.next();
+          if (result == null) {
+            throw new IOException("the log ends before the game: " + file);
+          }
+          game.setAction(player, result.first, result.second);
+          moves++;
+        }
+        return result(file, game, null, moves);
+      } finally {
+        reader.close();
+      }
+    }
+    GameLogReader reader = new GameLogReader(file);
+    try {
+      Game<Player<Action>, Action> game = newGame(reader.getGameClass(), reader.getParams(), errStream);
+      ActionCodec<Action> codec = (ActionCodec<Action>) game;
+      int moves = 0;
+      while (!game.isFinished()) {
+        Player<Action> player = game.getNextPlayer();
+        if (player == null) {
+          break;
+        }
+        if (!reader.next()) {
+          throw new IOException("the log ends before the game: " + file);
+        }
+        game.setAction(player, codec.decode(reader.getCode()), reader.getElapsed());
+        moves++;
+      }
+      if (reader.next()) {
+        throw new IOException("the log continues after the game: " + file);
+      }
+      return result(file, game, reader.getScores(), moves);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static GameReplay result(File file, Game<Player<Action>, Action> game, double[] recordedScores, int moves) {
+    Player<Action>[] players = game.getPlayers();
+    double[] scores = new double[players.length];
+    long[] remainingTimes = new long[players.length];
+    for (int i = 0; i < players.length; i++) {
+      scores[i] = game.getScore(players[i]);
+      remainingTimes[i] = game.getRemainingTime(players[i]);
+    }
+    return new GameReplay(file, scores, remainingTimes, recordedScores, moves);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return final scores of the replayed game
+   */
+  public double[] getScores() {
+    return scores;
+  }
+
+  /**
+   * @return final remaining times of the replayed game
+   */
+  public long[] getRemainingTimes() {
+    return remainingTimes;
+  }
+
+  /**
+   * @return scores of the trailer, null for a serialized log
+   */
+  public double[] getRecordedScores() {
+    return recordedScores;
+  }
+
+  /**
+   * @return the number of the replayed moves
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * Checks the scores of the replayed game against the recorded ones.
+   * @return false if the scores differ, true if they are the same or they were
+   * not recorded
+   */
+  public boolean isVerified() {
+    return recordedScores == null || Arrays.equals(scores, recordedScores);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("required parameters for the replay are:");
+      System.err.println("\t- log files");
+      System.exit(1);
+    }
+    // the games report the replay mode for each player
+    PrintStream quiet = new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+    });
+    int mismatches = 0;
+    int failures = 0;
+    long moves = 0;
+    long start = System.nanoTime();
+    for (String name : args) {
+      File file = new File(name);
+      try {
+        GameReplay replay = replay(file, quiet);
+        moves += replay.getMoves();
+        if (!replay.isVerified()) {
+          mismatches++;
+          System.out.println("MISMATCH " + file + " scores: " + Arrays.toString(replay.getScores()) + " recorded: " + Arrays.toString(replay.getRecordedScores()));
+        }
+      } catch (Exception e) {
+        failures++;
+        System.out.println("FAILED " + file + ": " + e);
+      }
+    }
+    long elapsed = (System.nanoTime() - start) / 1000000;
+    System.out.println("games: " + args.length + " moves: " + moves + " mismatches: " + mismatches + " failures: " + failures + " elapsed: " + elapsed + " ms");
+    System.exit(mismatches == 0 && failures == 0 ? 0 : 1);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import game.engine.Action;
+import game.engine.utils.Pair;
+
+/**
+ * Reads a gameplay log of the old format, that is written by Java
+ * serialization: the game class, the game parameters, a pair of the action
+ * and the elapsed time per move and the "end" string.
+ */
+public final class LegacyGameLogReader implements Closeable {
+
+  private final ObjectInputStream ois;
+  private final String gameClass;
+  private final String[] params;
+
+  /**
+   * Opens the log file and reads its header.
+   * @param file to be read
+   * @throws IOException if the file can not be read
+   * @throws ClassNotFoundException if the header is invalid
+   */
+  public LegacyGameLogReader(File file) throws IOException, ClassNotFoundException {
+    ois = new ObjectInputStream(new FileInputStream(file));
+    try {
+      gameClass = (String)ois.readObject();
+      params = (String[])ois.readObject();
+    } catch (IOException e) {
+      ois.close();
+      throw e;
+    } catch (ClassNotFoundException e) {
+      ois.close();
+      throw e;
+    }
+  }
+
+  public String getGameClass() {
+    return gameClass;
+  }
+
+  public String[] getParams() {
+    return params;
+  }
+
+  /**
+   * Reads the next move.
+   * @return the action and the elapsed time, or null at the end of the moves
+   * @throws IOException if the file can not be read
+   * @throws ClassNotFoundException if the class of the action is not found
+   */
+  @SuppressWarnings("unchecked")
+  public Pair<Action, Long> next() throws IOException, ClassNotFoundException {
+    Object o = ois.readObject();
+    if ("end".equals(o)) {
+      return null;
+    }
+    return (Pair<Action, Long>)o;
+  }
+
+  @Override
+  public void close() throws IOException {
+    ois.close();
+  }
+}
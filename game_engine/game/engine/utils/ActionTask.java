@@ -21,31 +21,112 @@ import java.lang.management.ManagementFactory;
 import java.util.List;
 
 import game.engine.Action;
+import game.engine.Deadline;
+import game.engine.DeadlineAware;
 import game.engine.Player;
 
 /**
  * Calls the {@link Player#getAction(List)} method of the player that was set in 
- * and returns its result and measures the elapsed time.
+ * and returns its result and measures the elapsed time. Players that implement 
+ * {@link DeadlineAware} get a {@link Deadline} of their remaining time before
+ * the measurement starts. An action costs a millisecond at least, because the
+ * CPU time is measured in scheduler ticks, and the actions within a tick would
+ * be free.
+ * The wall time of the call is measured too, its ratio to the CPU time shows
+ * how much the thread was waiting for a core. On threads without CPU time
+ * measurement, like virtual threads, the wall time is measured as CPU time.
+ * If a {@link CpuMeter} is set, it is bound to the calling thread, and the CPU
+ * time of the threads created by its factory since the previous charge is
+ * charged as well.
  */
 public final class ActionTask implements TimeOutTask<Action> {
   private Player<Action> player;
   private List<Pair<Integer, Action>> prevAction;
+  private long remaining;
+  private volatile Deadline deadline;
+  private CpuMeter meter;
   private long elapsed;
+  private long cpuElapsed;
+  private long wallElapsed;
 
-  public void setParams(Player<Action> player, List<Pair<Integer, Action>> prevAction) {
+  public void setParams(Player<Action> player, List<Pair<Integer, Action>> prevAction, long remaining) {
+    setParams(player, prevAction, remaining, null);
+  }
+
+  /**
+   * Sets the parameters of the next call.
+   * @param player to be called
+   * @param prevAction previous actions
+   * @param remaining remaining time of the player in milliseconds
+   * @param meter meter of the threads of the player, or null to measure the
+   * calling thread only
+   */
+  public void setParams(Player<Action> player, List<Pair<Integer, Action>> prevAction, long remaining, CpuMeter meter) {
     this.player = player;
+    this.meter = meter;
     this.prevAction = prevAction;
+    this.remaining = remaining;
+    cpuElapsed = 0;
+    wallElapsed = 0;
   }
 
   public long getElapsed() {
     return elapsed;
   }
 
+  /**
+   * Stops the deadline of the last call, if the player got one.
+   */
+  public void stop() {
+    Deadline deadline = this.deadline;
+    if (deadline != null) {
+      deadline.stop();
+    }
+  }
+
+  /**
+   * CPU (user) time of the last call in nanoseconds, 0 if it has not finished.
+   * @return elapsed CPU time
+   */
+  public long getCpuElapsed() {
+    return cpuElapsed;
+  }
+
+  /**
+   * Wall time of the last call in nanoseconds, 0 if it has not finished.
+   * @return elapsed wall time
+   */
+  public long getWallElapsed() {
+    return wallElapsed;
+  }
+
   @Override
   public Action call() throws Exception {
+    deadline = null;
+    if (player instanceof DeadlineAware) {
+      deadline = new Deadline(remaining);
+      ((DeadlineAware) player).setDeadline(deadline);
+    }
+    if (meter != null) {
+      meter.bind();
+    }
+    long start_w = System.nanoTime();
     long start_t = ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId());
-    Action result = player.getAction(prevAction);
-    elapsed = (ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId()) - start_t) / 1000000;
+    Action result;
+    try {
+      result = player.getAction(prevAction);
+    } finally {
+      CpuMeter.unbind();
+    }
+    long end_t = ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId());
+    wallElapsed = System.nanoTime() - start_w;
+    long cpu = start_t < 0 || end_t < 0 ? wallElapsed : end_t - start_t;
+    if (meter != null) {
+      cpu += meter.charge();
+    }
+    cpuElapsed = cpu;
+    // the players below their time reserve can not play for free forever
+    elapsed = Math.max(1, cpu / 1000000);
     return result;
   }
 
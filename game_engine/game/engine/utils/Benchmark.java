@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the throughput of benchmark tasks in the manner of JMH. A task is
+ * invoked repeatedly in warmup and measurement iterations of fixed length, and
+ * only the {@link Task#run()} calls are timed, the {@link Task#setUp()} calls
+ * before the invocations are not. The results can be printed as a table, or
+ * in the JSON format of the results of JMH, so runs can be compared.
+ */
+public final class Benchmark {
+
+  /** quantiles of the Student's t-distribution at 99.9% by the degrees of freedom */
+  private static final double[] T_QUANTILES = {Double.NaN, 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+      4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+  /** quantile of the normal distribution at 99.9% */
+  private static final double Z_QUANTILE = 3.291;
+
+  private final int warmupIterations;
+  private final long warmupTime;
+  private final int iterations;
+  private final long iterationTime;
+  /** consumes the results of the tasks, so they can not be eliminated */
+  private volatile long sink;
+
+  /**
+   * Creates a benchmark with the specified iterations.
+   * @param warmupIterations number of warmup iterations
+   * @param warmupTime length of a warmup iteration in milliseconds
+   * @param iterations number of measurement iterations
+   * @param iterationTime length of a measurement iteration in milliseconds
+   */
+  public Benchmark(int warmupIterations, long warmupTime, int iterations, long iterationTime) {
+    if (warmupIterations < 0 || iterations < 1 || warmupTime < 0 || iterationTime < 1) {
+      throw new IllegalArgumentException("illegal iterations: " + warmupIterations + "x" + warmupTime + " ms, " + iterations + "x" + iterationTime + " ms");
+    }
+    this.warmupIterations = warmupIterations;
+    this.warmupTime = warmupTime;
+    this.iterations = iterations;
+    this.iterationTime = iterationTime;
+  }
+
+  /**
+   * Runs the warmup and the measurement iterations of the specified task.
+   * @param task to be measured
+   * @return result of the measurement iterations
+   * @throws Exception if the task fails
+   */
+  public Result measure(Task task) throws Exception {
+    for (int i = 0; i < warmupIterations; i++) {
+      iterate(task, warmupTime);
+    }
+    double[] scores = new double[iterations];
+    for (int i = 0; i < iterations; i++) {
+      scores[i] = iterate(task, iterationTime);
+    }
+    return new Result(task, this, scores);
+  }
+
+  /**
+   * Invokes the specified task until the specified time elapses, but at least
+   * once.
+   * @return operations per second of the timed calls
+   */
+  private double iterate(Task task, long time) throws Exception {
+    long end = System.nanoTime() + time * 1000000;
+    long elapsed = 0;
+    long operations = 0;
+    long value = 0;
+    do {
+      task.setUp();
+      long start = System.nanoTime();
+      value ^= task.run();
+      elapsed += System.nanoTime() - start;
+      operations += task.getOperations();
+    } while (System.nanoTime() < end);
+    sink = value;
+    return operations * 1e9 / Math.max(1, elapsed);
+  }
+
+  /**
+   * Returns the JSON array of the specified results.
+   * @param results of the benchmarks
+   * @return JSON string
+   */
+  public static String toJson(List<Result> results) {
+    return Utils.jsonSerialize(results);
+  }
+
+  /**
+   * Returns the table of the specified results.
+   * @param results of the benchmarks
+   * @return text with a line per result
+   */
+  public static String toText(List<Result> results) {
+    int width = "Benchmark".length();
+    List<String> names = new ArrayList<String>();
+    for (Result result : results) {
+      String name = result.benchmark;
+      if (result.params != null) {
+        name += result.params.values();
+      }
+      names.add(name);
+      width = Math.max(width, name.length());
+    }
+    StringBuilder sb = new StringBuilder();
+    String format = "%-" + width + "s  %5s  %3s  %14s  %14s  %s%n";
+    sb.append(String.format(Locale.ROOT, format, "Benchmark", "Mode", "Cnt", "Score", "Error", "Units"));
+    for (int i = 0; i < results.size(); i++) {
+      Result result = results.get(i);
+      Metric metric = result.primaryMetric;
+      sb.append(String.format(Locale.ROOT, format, names.get(i), result.mode, result.measurementIterations,
+          String.format(Locale.ROOT, "%.3f", metric.score), metric.scoreError == null ? "" : String.format(Locale.ROOT, "+- %.3f", metric.scoreError), metric.scoreUnit));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Task of a benchmark. The value returned by {@link #run()} is consumed by
+   * the benchmark, so tasks should return a value, that depends on their
+   * computation.
+   */
+  public abstract static class Task {
+    private final String name;
+    private final Map<String, String> params = new LinkedHashMap<String, String>();
+
+    /**
+     * Creates a task with the specified name.
+     * @param name of the benchmark
+     */
+    protected Task(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Sets a parameter of the task, that is reported with the results.
+     * @param key name of the parameter
+     * @param value of the parameter
+     * @return this task
+     */
+    public Task param(String key, String value) {
+      params.put(key, value);
+      return this;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Map<String, String> getParams() {
+      return params;
+    }
+
+    /**
+     * Prepares the next invocation, it is not timed.
+     * @throws Exception if the preparation fails
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Performs the operations of an invocation, it is timed.
+     * @return value depending on the computation
+     * @throws Exception if the invocation fails
+     */
+    public abstract long run() throws Exception;
+
+    /**
+     * Returns the number of the operations performed by an invocation.
+     * @return number of operations
+     */
+    public abstract long getOperations();
+
+    /**
+     * Returns the unit of the operations.
+     * @return unit of the score of the task
+     */
+    public String getUnit() {
+      return "ops/s";
+    }
+  }
+
+  /**
+   * Result of a benchmark, its fields follow the JSON results of JMH.
+   */
+  public static final class Result {
+    public final String benchmark;
+    public final String mode = "thrpt";
+    public final int threads = 1;
+    public final int forks = 0;
+    public final String jvm = System.getProperty("java.home");
+    public final String jdkVersion = System.getProperty("java.version");
+    public final String vmName = System.getProperty("java.vm.name");
+    public final int warmupIterations;
+    public final String warmupTime;
+    public final int measurementIterations;
+    public final String measurementTime;
+    /** parameters of the task, null if there are not any */
+    public final Map<String, String> params;
+    public final Metric primaryMetric;
+
+    private Result(Task task, Benchmark benchmark, double[] scores) {
+      this.benchmark = task.getName();
+      warmupIterations = benchmark.warmupIterations;
+      warmupTime = benchmark.warmupTime + " ms";
+      measurementIterations = benchmark.iterations;
+      measurementTime = benchmark.iterationTime + " ms";
+      params = task.getParams().isEmpty() ? null : new LinkedHashMap<String, String>(task.getParams());
+      primaryMetric = new Metric(scores, task.getUnit());
+    }
+  }
+
+  /**
+   * Score of a benchmark with its error at 99.9% confidence.
+   */
+  public static final class Metric {
+    public final double score;
+    /** half width of the confidence interval, null for a single iteration */
+    public final Double scoreError;
+    public final double[] scoreConfidence;
+    public final String scoreUnit;
+    /** scores of the iterations of the fork */
+    public final double[][] rawData;
+
+    private Metric(double[] scores, String unit) {
+      double sum = 0;
+      for (double s : scores) {
+        sum += s;
+      }
+      double mean = sum / scores.length;
+      double error = 0;
+      if (1 < scores.length) {
+        double squares = 0;
+        for (double s : scores) {
+          squares += (s - mean) * (s - mean);
+        }
+        int df = scores.length - 1;
+        double t = df < T_QUANTILES.length ? T_QUANTILES[df] : Z_QUANTILE;
+        error = t * Math.sqrt(squares / df / scores.length);
+      }
+      score = mean;
+      scoreError = 1 < scores.length ? Double.valueOf(error) : null;
+      scoreConfidence = new double[] {mean - error, mean + error};
+      scoreUnit = unit;
+      rawData = new double[][] {scores.clone()};
+    }
+  }
+}
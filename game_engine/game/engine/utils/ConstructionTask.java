@@ -22,28 +22,76 @@ import java.lang.reflect.Constructor;
 
 /**
  * Constructs the specified type of object calling the constructor was set with 
- * the parameters were set and measures the elapsed time.
+ * the parameters were set and measures the elapsed time. If a {@link CpuMeter}
+ * is set, the CPU time of the threads created by its factory is measured too.
+ * The constructor can get the number of the threads it can compute on by
+ * {@link #getThreads()}.
  * @param <R> type of object to be constructed
  */
 public class ConstructionTask<R> implements TimeOutTask<R> {
   private Constructor<R> constructor;
   private Object[] params;
   private long elapsed;
+  private CpuMeter meter;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  /** threads of the object being constructed on the current thread */
+  private static final ThreadLocal<Integer> current = new ThreadLocal<Integer>();
 
   public void setConstructor(Constructor<R> constructor, Object... params) {
     this.constructor = constructor;
     this.params = params;
   }
 
+  /**
+   * Sets the meter of the threads of the constructed object.
+   * @param meter meter or null to measure the calling thread only
+   */
+  public void setMeter(CpuMeter meter) {
+    this.meter = meter;
+  }
+
+  /**
+   * Sets the number of the threads of the constructed object.
+   * @param threads number of threads
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the number of the threads of the object being constructed on the
+   * current thread.
+   * @return number of threads, or the number of the processors outside of a
+   * construction task
+   */
+  public static int getThreads() {
+    Integer threads = current.get();
+    return threads == null ? Runtime.getRuntime().availableProcessors() : threads;
+  }
+
   public long getElapsed() {
     return elapsed;
   }
 
   @Override
   public R call() throws Exception {
+    if (meter != null) {
+      meter.bind();
+    }
+    current.set(threads);
+    if (meter != null) {
+      meter.charge();
+    }
     long start_t = ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId());
-    R result = constructor.newInstance(params);
-    elapsed = (ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId()) - start_t) / 1000000;
+    R result;
+    try {
+      result = constructor.newInstance(params);
+    } finally {
+      CpuMeter.unbind();
+      current.remove();
+    }
+    long end_m = meter == null ? 0 : meter.charge();
+    elapsed = (ManagementFactory.getThreadMXBean().getThreadUserTime(Thread.currentThread().getId()) - start_t + end_m) / 1000000;
     return result;
   }
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures the CPU (user) time of the threads of a player. The threads are
+ * registered by the thread factory of the meter, the CPU time of the finished
+ * threads is kept. The meter is bound to the thread, that computes an action
+ * of the player, so the player gets the factory by {@link #threadFactory()},
+ * and the threads created by the factory are bound to the meter and to the
+ * {@link OutputCapture} of the creating thread as well. Other threads do not
+ * inherit the bindings.
+ * <p>
+ * Only the threads of the factory are measured: the tasks run by the common
+ * fork-join pool, by parallel streams or by executors, that are not created by
+ * the factory, are not charged to the player.
+ */
+public final class CpuMeter {
+  private static final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+  private static final ThreadLocal<CpuMeter> current = new ThreadLocal<CpuMeter>();
+  private static final ThreadFactory factory = Executors.defaultThreadFactory();
+
+  private final List<Thread> threads = new ArrayList<Thread>();
+  /** CPU time of the finished threads */
+  private long retired;
+  /** CPU time of the threads at the last charge */
+  private long charged;
+
+  /**
+   * Binds the current thread to the meter.
+   */
+  public void bind() {
+    current.set(this);
+  }
+
+  /**
+   * Removes the binding of the current thread.
+   */
+  public static void unbind() {
+    current.remove();
+  }
+
+  /**
+   * Returns the factory of the meter and the output capture, that are bound to
+   * the current thread. Players should create their threads by this factory,
+   * so their CPU time is charged in the accounting mode of the engine, that
+   * measures all threads, and their output is captured.
+   * @return factory of threads with the bindings of the current thread
+   */
+  public static ThreadFactory threadFactory() {
+    final CpuMeter meter = current.get();
+    final OutputCapture capture = OutputCapture.get();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        Thread thread = factory.newThread(new Runnable() {
+          @Override
+          public void run() {
+            if (capture != null) {
+              capture.bind();
+            }
+            if (meter != null) {
+              meter.bind();
+            }
+            try {
+              runnable.run();
+            } finally {
+              if (meter != null) {
+                meter.retire(Thread.currentThread());
+              }
+              unbind();
+              OutputCapture.unbind();
+            }
+          }
+        });
+        if (meter != null) {
+          synchronized (meter) {
+            meter.threads.add(thread);
+          }
+        }
+        return thread;
+      }
+    };
+  }
+
+  private synchronized void retire(Thread thread) {
+    long time = bean.getCurrentThreadUserTime();
+    if (0 < time) {
+      retired += time;
+    }
+    threads.remove(thread);
+  }
+
+  /**
+   * Returns the CPU time of the registered threads, that are running or have
+   * finished.
+   * @return CPU time in nanoseconds
+   */
+  public synchronized long getCpuTime() {
+    long time = retired;
+    for (Thread thread : threads) {
+      long threadTime = bean.getThreadUserTime(thread.getId());
+      if (0 < threadTime) {
+        time += threadTime;
+      }
+    }
+    return time;
+  }
+
+  /**
+   * Returns the CPU time of the registered threads since the last charge, so
+   * the time used between the actions of the player, e.g. by pondering, is
+   * charged to the next action.
+   * @return CPU time in nanoseconds
+   */
+  public synchronized long charge() {
+    long time = getCpuTime();
+    long delta = Math.max(0, time - charged);
+    charged = time;
+    return delta;
+  }
+}
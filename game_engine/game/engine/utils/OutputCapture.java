@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.engine.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Captures the standard output and error of the threads that are bound to it.
+ * {@link #install()} replaces System.out and System.err once by streams, that
+ * write into the capture of the current thread, or into the original streams
+ * if the thread is not bound. The binding is not inherited by other threads,
+ * only the threads of {@link CpuMeter#threadFactory()} are bound to the
+ * capture of the thread that created them, so the helper threads of a player
+ * are captured as well.
+ */
+public final class OutputCapture {
+  private static final PrintStream defaultOut = System.out;
+  private static final PrintStream defaultErr = System.err;
+  private static final ThreadLocal<OutputCapture> current = new ThreadLocal<OutputCapture>();
+  private static boolean isInstalled;
+
+  private final StringBuffer sbOut = new StringBuffer();
+  private final StringBuffer sbErr = new StringBuffer();
+  private final PrintStream userOut = new PrintStream(new StringBufferOutputStream(sbOut));
+  private final PrintStream userErr = new PrintStream(new StringBufferOutputStream(sbErr));
+
+  /**
+   * Replaces the System.out and System.err streams by the routing streams, if
+   * they have not been replaced yet.
+   */
+  public static synchronized void install() {
+    if (!isInstalled) {
+      System.setOut(new PrintStream(new Router(defaultOut, false), true));
+      System.setErr(new PrintStream(new Router(defaultErr, true), true));
+      isInstalled = true;
+    }
+  }
+
+  /**
+   * Binds the current thread to the capture.
+   */
+  public void bind() {
+    current.set(this);
+  }
+
+  /**
+   * Returns the capture of the current thread.
+   * @return capture, or null if the thread is not bound
+   */
+  public static OutputCapture get() {
+    return current.get();
+  }
+
+  /**
+   * Removes the binding of the current thread.
+   */
+  public static void unbind() {
+    current.remove();
+  }
+
+  /**
+   * Checks whether anything has been written since the last {@link #clear()}.
+   * @return true, if nothing has been written
+   */
+  public boolean isEmpty() {
+    return sbOut.length() == 0 && sbErr.length() == 0;
+  }
+
+  /**
+   * Returns the captured standard output.
+   * @return captured output
+   */
+  public String getOut() {
+    return sbOut.toString();
+  }
+
+  /**
+   * Returns the captured standard error.
+   * @return captured error output
+   */
+  public String getErr() {
+    return sbErr.toString();
+  }
+
+  /**
+   * Returns a stream that writes into the captured standard error.
+   * @return error stream of the capture
+   */
+  public PrintStream getErrStream() {
+    return userErr;
+  }
+
+  /**
+   * Removes the captured outputs.
+   */
+  public void clear() {
+    sbOut.delete(0, sbOut.length());
+    sbErr.delete(0, sbErr.length());
+  }
+
+  /**
+   * Writes into the capture of the current thread or into the default stream.
+   */
+  private static final class Router extends OutputStream {
+    private final PrintStream defaultStream;
+    private final boolean isErr;
+
+    private Router(PrintStream defaultStream, boolean isErr) {
+      this.defaultStream = defaultStream;
+      this.isErr = isErr;
+    }
+
+    private PrintStream target() {
+      OutputCapture capture = current.get();
+      return capture == null ? defaultStream : isErr ? capture.userErr : capture.userOut;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target().flush();
+    }
+  }
+}
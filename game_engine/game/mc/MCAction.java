@@ -27,6 +27,14 @@ import game.engine.Action;
 public final class MCAction implements Action {
   private static final long serialVersionUID = 1984433168441571946L;
   
+  /** shared instances of the actions on the board, indexed by {@link MCMove} */
+  private static final MCAction[] ACTIONS = new MCAction[MCMove.COUNT];
+  static {
+    for (int move = 0; move < MCMove.COUNT; move++) {
+      ACTIONS[move] = new MCAction(MCMove.x1(move), MCMove.y1(move), MCMove.x2(move), MCMove.y2(move));
+    }
+  }
+  
   /** From and to coordinates of the moving figure. */
   public final int x1, y1, x2, y2;
   /**
@@ -42,6 +50,39 @@ public final class MCAction implements Action {
     this.y2 = y2;
   }
   
+  /**
+   * Returns the shared instance of the specified action, or a new instance if 
+   * the action is outside of the board.
+   * @param x1 row index of move from
+   * @param y1 column index of move from
+   * @param x2 row index of move to
+   * @param y2 column index of move to
+   * @return action
+   */
+  public static MCAction of(int x1, int y1, int x2, int y2) {
+    if (MCMove.isInside(x1, y1) && MCMove.isInside(x2, y2)) {
+      return ACTIONS[MCMove.encode(x1, y1, x2, y2)];
+    }
+    return new MCAction(x1, y1, x2, y2);
+  }
+  
+  /**
+   * Returns the shared instance of the specified move.
+   * @param move encoded by {@link MCMove}
+   * @return action
+   */
+  public static MCAction of(int move) {
+    return ACTIONS[move];
+  }
+  
+  /**
+   * Replaces the deserialized actions with the shared instances.
+   * @return shared action
+   */
+  private Object readResolve() {
+    return of(x1, y1, x2, y2);
+  }
+  
   public String toString() {
     return x1 + ", " + y1 + " -> " + x2 + ", " + y2;
   }
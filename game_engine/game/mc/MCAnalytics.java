@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import game.engine.log.GameArchive;
+import game.engine.log.GameLog;
+import game.engine.utils.Utils;
+
+/**
+ * Statistics of {@link MCGame} gameplay corpora: the results, the game
+ * lengths, the captures by the value of the captured figure and the
+ * percentiles of the move times, per player class and per color. The moves
+ * are replayed by {@link MCPosition}, that implements the rules of the game.
+ * <p>
+ * A directory of binary logs or a {@link GameArchive} is processed in
+ * parallel: every worker thread has its own statistics, that are merged at
+ * the end, and the logs are passed to the workers through a bounded queue, so
+ * the memory does not depend on the size of the corpus. The move times are
+ * counted in a histogram, it is exact below {@link #EXACT_TIME} milliseconds.
+ */
+public final class MCAnalytics {
+
+  /** move times below are counted exactly, above in power of two buckets */
+  public static final int EXACT_TIME = 1024;
+  private static final int BUCKETS = EXACT_TIME + 64;
+  private static final long START = MCBitboard.pack(MCGame.newBoard());
+  private static final File END = new File("");
+
+  private final Map<String, Stats> stats = new HashMap<String, Stats>();
+  private final MCPosition position = new MCPosition(START);
+  private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+  private long games;
+  private long failures;
+
+  /**
+   * Adds a game. The first player is the player 0, the players move in turn.
+   * @param players player classes
+   * @param scores final scores
+   * @param codes action codes of the moves, see {@link MCGame#encode(MCAction)}
+   * @param elapsed elapsed times of the moves in milliseconds
+   * @param count the number of the moves
+   */
+  public void add(String[] players, double[] scores, int[] codes, long[] elapsed, int count) {
+    if (players.length != 2 || scores.length != 2) {
+      throw new IllegalArgumentException("two players are required");
+    }
+    Stats[] slots = new Stats[4];
+    for (int color = 0; color < 2; color++) {
+      slots[color] = get(players[color]);
+      slots[color + 2] = get("#" + color);
+    }
+    games++;
+    position.set(START);
+    for (int i = 0; i < count; i++) {
+      int color = position.getColor();
+      slots[color].time(elapsed[i]);
+      slots[color + 2].time(elapsed[i]);
+      if (!MCGameRecord.play(position, codes[i], moves)) {
+        // the game is finished by a time-out
+        break;
+      }
+      slots[color].captures[position.getPrevScore()]++;
+      slots[color + 2].captures[position.getPrevScore()]++;
+    }
+    for (int color = 0; color < 2; color++) {
+      int result = Double.compare(scores[color], scores[1 - color]);
+      for (int k = color; k < 4; k += 2) {
+        Stats s = slots[k];
+        s.games++;
+        s.length += count;
+        if (0 < result) {
+          s.wins++;
+        } else if (result == 0) {
+          s.draws++;
+        } else {
+          s.losses++;
+        }
+        if (scores[color] == -1) {
+          s.timeouts++;
+        }
+      }
+    }
+  }
+
+  private Stats get(String player) {
+    Stats s = stats.get(player);
+    if (s == null) {
+      s = new Stats();
+      stats.put(player, s);
+    }
+    return s;
+  }
+
+  /**
+   * Adds the statistics of the specified analytics.
+   * @param other statistics to be added
+   */
+  public void merge(MCAnalytics other) {
+    games += other.games;
+    failures += other.failures;
+    for (Map.Entry<String, Stats> entry : other.stats.entrySet()) {
+      get(entry.getKey()).merge(entry.getValue());
+    }
+  }
+
+  /**
+   * @return the number of the added games
+   */
+  public long getGames() {
+    return games;
+  }
+
+  /**
+   * @return the number of the logs, that could not be read
+   */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the table of the statistics: a row per player class, sorted by the
+   * name, and a row per color, the name of color i is #i.
+   * @return rows of the columns by their names
+   */
+  public List<Map<String, Object>> getTable() {
+    List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (Map.Entry<String, Stats> entry : new TreeMap<String, Stats>(stats).entrySet()) {
+      Stats s = entry.getValue();
+      Map<String, Object> row = new LinkedHashMap<String, Object>();
+      row.put("player", entry.getKey());
+      row.put("games", s.games);
+      row.put("wins", s.wins);
+      row.put("draws", s.draws);
+      row.put("losses", s.losses);
+      row.put("win_rate", s.games == 0 ? 0 : (double)s.wins / s.games);
+      row.put("timeouts", s.timeouts);
+      row.put("avg_length", s.games == 0 ? 0 : (double)s.length / s.games);
+      row.put("moves", s.moves);
+      row.put("captures_1", s.captures[1]);
+      row.put("captures_2", s.captures[2]);
+      row.put("captures_3", s.captures[3]);
+      row.put("time_p50", s.percentile(0.5));
+      row.put("time_p90", s.percentile(0.9));
+      row.put("time_p99", s.percentile(0.99));
+      row.put("time_max", s.maxTime);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the table in CSV format.
+   * @return header line and a line per row
+   */
+  public String toCsv() {
+    StringBuilder sb = new StringBuilder();
+    List<Map<String, Object>> rows = getTable();
+    if (!rows.isEmpty()) {
+      sb.append(join(rows.get(0).keySet())).append('\n');
+    }
+    for (Map<String, Object> row : rows) {
+      sb.append(join(row.values())).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private static String join(Iterable<?> values) {
+    StringBuilder sb = new StringBuilder();
+    for (Object value : values) {
+      if (0 < sb.length()) {
+        sb.append(',');
+      }
+      String s = String.valueOf(value);
+      sb.append(s.indexOf(',') < 0 && s.indexOf('"') < 0 ? s : '"' + s.replace("\"", "\"\"") + '"');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the table in JSON format.
+   * @return JSON array of the rows
+   */
+  public String toJson() {
+    return Utils.jsonSerialize(getTable());
+  }
+
+  /**
+   * Processes the binary logs of the specified directory in parallel.
+   * @param dir directory of the logs
+   * @param threads number of the worker threads
+   * @return statistics of the logs
+   * @throws Exception if the directory can not be read
+   */
+  public static MCAnalytics analyzeLogs(Path dir, int threads) throws Exception {
+    final BlockingQueue<File> queue = new ArrayBlockingQueue<File>(1024);
+    List<Callable<MCAnalytics>> workers = new ArrayList<Callable<MCAnalytics>>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(new Callable<MCAnalytics>() {
+        @Override
+        public MCAnalytics call() throws Exception {
+          MCAnalytics analytics = new MCAnalytics();
+          MCGameRecord game = new MCGameRecord();
+          for (File file = queue.take(); file != END; file = queue.take()) {
+            try {
+              game.read(file);
+              analytics.add(game.players, game.scores, game.codes, game.elapsed, game.count);
+            } catch (Exception e) {
+              // a worker keeps taking the logs, so the queue does not block
+              analytics.failures++;
+              System.err.println("can not read " + file + ": " + e.getMessage());
+            }
+          }
+          return analytics;
+        }
+      });
+    }
+    ExecutorService service = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<MCAnalytics>> futures = new ArrayList<Future<MCAnalytics>>();
+      for (Callable<MCAnalytics> worker : workers) {
+        futures.add(service.submit(worker));
+      }
+      try {
+        DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + GameLog.EXTENSION);
+        try {
+          for (Path file : files) {
+            queue.put(file.toFile());
+          }
+        } finally {
+          files.close();
+          for (int i = 0; i < threads; i++) {
+            queue.put(END);
+          }
+        }
+      } catch (IOException e) {
+        for (Future<MCAnalytics> future : futures) {
+          future.cancel(true);
+        }
+        throw e;
+      }
+      return merge(futures);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  /**
+   * Processes the games of the specified archive in parallel.
+   * @param archive archive of {@link MCGame} games
+   * @param threads number of the worker threads
+   * @return statistics of the games
+   * @throws Exception if the archive can not be read
+   */
+  public static MCAnalytics analyzeArchive(final GameArchive archive, int threads) throws Exception {
+    final int chunk = 1024;
+    final AtomicInteger next = new AtomicInteger();
+    ExecutorService service = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<MCAnalytics>> futures = new ArrayList<Future<MCAnalytics>>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(service.submit(new Callable<MCAnalytics>() {
+          @Override
+          public MCAnalytics call() throws Exception {
+            MCAnalytics analytics = new MCAnalytics();
+            MCGameRecord game = new MCGameRecord();
+            for (int from = next.getAndAdd(chunk); from < archive.getGames(); from = next.getAndAdd(chunk)) {
+              for (int g = from; g < Math.min(from + chunk, archive.getGames()); g++) {
+                if (MCGameRecord.isRecord(archive, g)) {
+                  game.read(archive, g);
+                  analytics.add(game.players, game.scores, game.codes, game.elapsed, game.count);
+                }
+              }
+            }
+            return analytics;
+          }
+        }));
+      }
+      return merge(futures);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  private static MCAnalytics merge(List<Future<MCAnalytics>> futures) throws Exception {
+    MCAnalytics result = new MCAnalytics();
+    for (Future<MCAnalytics> future : futures) {
+      result.merge(future.get());
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    boolean isJson = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int k = 0;
+    for (; k + 1 < args.length && args[k].startsWith("-"); k++) {
+      if (args[k].equals("-json")) {
+        isJson = true;
+      } else if (args[k].equals("-threads")) {
+        threads = Integer.parseInt(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    if (args.length != k + 1) {
+      System.err.println("optional parameters for the analytics are:");
+      System.err.println("\t-json (output in JSON instead of CSV)");
+      System.err.println("\t-threads <number of worker threads>");
+      System.err.println("required parameters for the analytics are:");
+      System.err.println("\t- directory of binary logs or game archive");
+      System.exit(1);
+    }
+    File input = new File(args[k]);
+    long start = System.nanoTime();
+    MCAnalytics analytics;
+    if (input.isDirectory()) {
+      analytics = analyzeLogs(input.toPath(), threads);
+    } else {
+      GameArchive archive = new GameArchive(input);
+      try {
+        analytics = analyzeArchive(archive, threads);
+      } finally {
+        archive.close();
+      }
+    }
+    System.out.print(isJson ? analytics.toJson() + "\n" : analytics.toCsv());
+    System.err.println("games: " + analytics.getGames() + " failures: " + analytics.getFailures() + " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+    System.exit(0);
+  }
+
+  /** statistics of a player class or a color */
+  private static final class Stats {
+    private long games;
+    private long wins;
+    private long draws;
+    private long losses;
+    private long timeouts;
+    /** sum of the lengths of the games */
+    private long length;
+    private long moves;
+    /** the number of moves by the score, captures have positive scores */
+    private final long[] captures = new long[4];
+    private final long[] times = new long[BUCKETS];
+    private long maxTime;
+
+    private void time(long elapsed) {
+      moves++;
+      long t = Math.max(0, elapsed);
+      times[t < EXACT_TIME ? (int)t : EXACT_TIME + 63 - Long.numberOfLeadingZeros(t)]++;
+      maxTime = Math.max(maxTime, t);
+    }
+
+    /**
+     * Returns the move time at the specified quantile, the lower bound of the
+     * bucket above the exact range.
+     */
+    private long percentile(double q) {
+      long rank = (long)Math.ceil(q * moves);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += times[i];
+        if (0 < seen && rank <= seen) {
+          return i < EXACT_TIME ? i : 1L << (i - EXACT_TIME);
+        }
+      }
+      return 0;
+    }
+
+    private void merge(Stats other) {
+      games += other.games;
+      wins += other.wins;
+      draws += other.draws;
+      losses += other.losses;
+      timeouts += other.timeouts;
+      length += other.length;
+      moves += other.moves;
+      for (int i = 0; i < captures.length; i++) {
+        captures[i] += other.captures[i];
+      }
+      for (int i = 0; i < BUCKETS; i++) {
+        times[i] += other.times[i];
+      }
+      maxTime = Math.max(maxTime, other.maxTime);
+    }
+  }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import game.engine.utils.Benchmark;
+import game.engine.utils.Pair;
+
+/**
+ * Benchmarks of the rules, the move generation and the players of the
+ * {@link MCGame} game, measured by {@link Benchmark}:
+ * <ul>
+ * <li>score: {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)} of the legal moves of the positions</li>
+ * <li>setAction: {@link MCGame#setAction(MCPlayer, MCAction, long)} of the moves of the recorded games</li>
+ * <li>generate: the legal moves of the positions by {@link MCMoveGenerator}</li>
+ * <li>getAction: the actions of a player in the positions, the players are constructed before the timed calls</li>
+ * <li>selfPlay: games of a player against itself including the construction of the game</li>
+ * </ul>
+ * The positions are the positions of games played by the
+ * {@link #POSITION_PLAYERS} players with fixed seeds, so every run measures
+ * the same positions.
+ */
+public final class MCBenchmark {
+
+  /** players of the games of the positions */
+  public static final String[] POSITION_PLAYERS = {"game.mc.players.GreedyPlayer", "h153605"};
+  /** seeds of the games of the positions */
+  public static final long[] POSITION_SEEDS = {1, 2, 3, 4, 5, 6, 7, 8};
+  /** players of the getAction and the selfPlay benchmarks */
+  public static final String[] PLAYERS = {"game.mc.players.GreedyPlayer", "h153605"};
+  /** games are stopped after so many plies, if they do not finish */
+  public static final int MAX_PLIES = 1000;
+  /** time of the players, the benchmarks do not charge it */
+  private static final long TIME = 1000000;
+  private static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+  });
+
+  /** positions of the recorded games in the order of the plies */
+  private final List<Position> positions = new ArrayList<Position>();
+  /** moves of the recorded games */
+  private final List<MCAction[]> games = new ArrayList<MCAction[]>();
+
+  /**
+   * Records the positions of the games of the {@link #POSITION_PLAYERS}.
+   * @throws Exception if a player can not be constructed
+   */
+  public MCBenchmark() throws Exception {
+    for (long seed : POSITION_SEEDS) {
+      List<MCAction> actions = new ArrayList<MCAction>();
+      play(new String[] {Long.toString(seed), Long.toString(TIME), POSITION_PLAYERS[0], POSITION_PLAYERS[1]}, positions, actions);
+      games.add(actions.toArray(new MCAction[0]));
+    }
+  }
+
+  public List<Position> getPositions() {
+    return Collections.unmodifiableList(positions);
+  }
+
+  /**
+   * Returns the tasks of the benchmarks.
+   * @return tasks
+   */
+  public List<Benchmark.Task> getTasks() {
+    List<Benchmark.Task> tasks = new ArrayList<Benchmark.Task>();
+    tasks.add(new ScoreTask());
+    tasks.add(new SetActionTask());
+    tasks.add(new GenerateTask());
+    for (String player : PLAYERS) {
+      tasks.add(new GetActionTask(player).param("player", player));
+    }
+    for (String player : PLAYERS) {
+      tasks.add(new SelfPlayTask(player).param("player", player));
+    }
+    return tasks;
+  }
+
+  /**
+   * Plays a game like the engine, but the players are called on the current
+   * thread without time limits.
+   * @param params parameters of the game
+   * @param positions positions before the moves are added to, can be null
+   * @param actions actions of the game are added to, can be null
+   * @return the number of the plies
+   * @throws Exception if a player can not be constructed
+   */
+  public static int play(String[] params, List<Position> positions, List<MCAction> actions) throws Exception {
+    MCGame game = new MCGame(NULL_STREAM, params, false);
+    List<List<Pair<Integer, MCAction>>> prevActions = new ArrayList<List<Pair<Integer, MCAction>>>();
+    for (int i = 0; i < 2; i++) {
+      prevActions.add(new LinkedList<Pair<Integer, MCAction>>());
+    }
+    int[][] board = new int[MCBitboard.ROWS][MCBitboard.COLUMNS];
+    int[][] figures = new int[2][3];
+    long prevBoard = game.getBitboard();
+    MCAction prevAction = null;
+    int prevScore = 0;
+    int plies = 0;
+    MCPlayer player;
+    while (plies < MAX_PLIES && !game.isFinished() && (player = game.getNextPlayer()) != null) {
+      List<Pair<Integer, MCAction>> prevAction0 = prevActions.get(player.color);
+      MCAction action = player.getAction(prevAction0);
+      prevAction0.clear();
+      prevActions.get(1 - player.color).add(new Pair<Integer, MCAction>(player.color, action));
+      long bitboard = game.getBitboard();
+      MCBitboard.unpack(bitboard, board);
+      MCBitboard.count(bitboard, figures);
+      int score = MCGame.score(board, figures, prevAction, prevScore, player.color, action);
+      if (positions != null) {
+        positions.add(new Position(bitboard, plies == 0 ? bitboard : prevBoard, prevAction, prevScore, player.color, action));
+      }
+      if (actions != null) {
+        actions.add(action);
+      }
+      game.setAction(player, action, 0);
+      prevBoard = bitboard;
+      prevAction = action;
+      prevScore = score;
+      plies++;
+    }
+    return plies;
+  }
+
+  /**
+   * Returns the constructor of the specified player class.
+   */
+  @SuppressWarnings("unchecked")
+  private static Constructor<MCPlayer> constructor(String player) throws Exception {
+    return ((Class<MCPlayer>) Class.forName(player)).getConstructor(int.class, int[][].class, Random.class);
+  }
+
+  /**
+   * Position of a recorded game before a move.
+   */
+  public static final class Position {
+    /** packed board */
+    public final long board;
+    /** packed board before the previous action, the same at the first ply */
+    public final long prevBoard;
+    /** previous action, null at the first ply */
+    public final MCAction prevAction;
+    /** score of the previous action */
+    public final int prevScore;
+    /** color of the player to move */
+    public final int color;
+    /** action of the player */
+    public final MCAction action;
+
+    private Position(long board, long prevBoard, MCAction prevAction, int prevScore, int color, MCAction action) {
+      this.board = board;
+      this.prevBoard = prevBoard;
+      this.prevAction = prevAction;
+      this.prevScore = prevScore;
+      this.color = color;
+      this.action = action;
+    }
+  }
+
+  /**
+   * Scores the legal moves of the positions.
+   */
+  private final class ScoreTask extends Benchmark.Task {
+    private final int[][][] boards = new int[positions.size()][MCBitboard.ROWS][MCBitboard.COLUMNS];
+    private final int[][][] figures = new int[positions.size()][2][3];
+    private final MCAction[][] actions = new MCAction[positions.size()][];
+    private long operations;
+
+    private ScoreTask() {
+      super(MCBenchmark.class.getName() + ".score");
+      int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+      for (int i = 0; i < positions.size(); i++) {
+        Position position = positions.get(i);
+        MCBitboard.unpack(position.board, boards[i]);
+        MCBitboard.count(position.board, figures[i]);
+        int count = MCMoveGenerator.generate(position.board, MCMove.encode(position.prevAction), position.prevScore, position.color, moves);
+        actions[i] = new MCAction[count];
+        for (int j = 0; j < count; j++) {
+          actions[i][j] = MCMove.toAction(moves[j]);
+        }
+        operations += count;
+      }
+    }
+
+    @Override
+    public long run() {
+      long sum = 0;
+      for (int i = 0; i < boards.length; i++) {
+        Position position = positions.get(i);
+        for (MCAction action : actions[i]) {
+          sum += MCGame.score(boards[i], figures[i], position.prevAction, position.prevScore, position.color, action);
+        }
+      }
+      return sum;
+    }
+
+    @Override
+    public long getOperations() {
+      return operations;
+    }
+  }
+
+  /**
+   * Sets the moves of the recorded games on games in replay mode.
+   */
+  private final class SetActionTask extends Benchmark.Task {
+    private final MCGame[] replays = new MCGame[games.size()];
+    private final String[] params = {"0", Long.toString(TIME), POSITION_PLAYERS[0], POSITION_PLAYERS[1]};
+
+    private SetActionTask() {
+      super(MCBenchmark.class.getName() + ".setAction");
+    }
+
+    @Override
+    public void setUp() throws Exception {
+      for (int i = 0; i < replays.length; i++) {
+        replays[i] = new MCGame(NULL_STREAM, params, true);
+      }
+    }
+
+    @Override
+    public long run() {
+      long sum = 0;
+      for (int i = 0; i < replays.length; i++) {
+        MCGame game = replays[i];
+        for (MCAction action : games.get(i)) {
+          game.setAction(game.getNextPlayer(), action, 0);
+        }
+        sum += game.getBitboard();
+      }
+      return sum;
+    }
+
+    @Override
+    public long getOperations() {
+      return positions.size();
+    }
+  }
+
+  /**
+   * Generates the legal moves of the positions.
+   */
+  private final class GenerateTask extends Benchmark.Task {
+    private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    private final int[] prevMoves = new int[positions.size()];
+
+    private GenerateTask() {
+      super(MCBenchmark.class.getName() + ".generate");
+      for (int i = 0; i < prevMoves.length; i++) {
+        prevMoves[i] = MCMove.encode(positions.get(i).prevAction);
+      }
+    }
+
+    @Override
+    public long run() {
+      long sum = 0;
+      for (int i = 0; i < prevMoves.length; i++) {
+        Position position = positions.get(i);
+        int count = MCMoveGenerator.generate(position.board, prevMoves[i], position.prevScore, position.color, moves);
+        sum += count + moves[count >> 1];
+      }
+      return sum;
+    }
+
+    @Override
+    public long getOperations() {
+      return prevMoves.length;
+    }
+  }
+
+  /**
+   * Calls a player in the positions. The player of a position is constructed
+   * on the board before the previous action, and it gets the previous action.
+   */
+  private final class GetActionTask extends Benchmark.Task {
+    private final Constructor<MCPlayer> constructor;
+    private final MCPlayer[] players = new MCPlayer[positions.size()];
+    private final List<List<Pair<Integer, MCAction>>> prevActions = new ArrayList<List<Pair<Integer, MCAction>>>();
+
+    private GetActionTask(String player) {
+      super(MCBenchmark.class.getName() + ".getAction");
+      try {
+        constructor = constructor(player);
+      } catch (Exception e) {
+        throw new IllegalArgumentException("invalid player: " + player, e);
+      }
+      for (int i = 0; i < players.length; i++) {
+        prevActions.add(new LinkedList<Pair<Integer, MCAction>>());
+      }
+    }
+
+    @Override
+    public void setUp() throws Exception {
+      for (int i = 0; i < players.length; i++) {
+        Position position = positions.get(i);
+        int[][] board = new int[MCBitboard.ROWS][MCBitboard.COLUMNS];
+        MCBitboard.unpack(position.prevBoard, board);
+        players[i] = constructor.newInstance(position.color, board, new Random(i));
+        List<Pair<Integer, MCAction>> prevAction = prevActions.get(i);
+        prevAction.clear();
+        if (position.prevAction != null) {
+          prevAction.add(new Pair<Integer, MCAction>(1 - position.color, position.prevAction));
+        }
+      }
+    }
+
+    @Override
+    public long run() {
+      long sum = 0;
+      for (int i = 0; i < players.length; i++) {
+        sum += MCMove.encode(players[i].getAction(prevActions.get(i)));
+      }
+      return sum;
+    }
+
+    @Override
+    public long getOperations() {
+      return players.length;
+    }
+
+    @Override
+    public String getUnit() {
+      return "actions/s";
+    }
+  }
+
+  /**
+   * Plays games of a player against itself with consecutive seeds.
+   */
+  private static final class SelfPlayTask extends Benchmark.Task {
+    private final String[] params;
+    private long seed;
+
+    private SelfPlayTask(String player) {
+      super(MCBenchmark.class.getName() + ".selfPlay");
+      params = new String[] {null, Long.toString(TIME), player, player};
+    }
+
+    @Override
+    public long run() throws Exception {
+      params[0] = Long.toString(seed++);
+      return play(params, null, null);
+    }
+
+    @Override
+    public long getOperations() {
+      return 1;
+    }
+
+    @Override
+    public String getUnit() {
+      return "games/s";
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int warmupIterations = 3;
+    long warmupTime = 1000;
+    int iterations = 5;
+    long iterationTime = 1000;
+    File json = null;
+    int k = 0;
+    for (; k < args.length && args[k].startsWith("-"); k++) {
+      if (k + 1 == args.length) {
+        System.err.println("missing value of option: " + args[k]);
+        System.exit(1);
+      } else if (args[k].equals("-wi")) {
+        warmupIterations = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-w")) {
+        warmupTime = Long.parseLong(args[++k]);
+      } else if (args[k].equals("-i")) {
+        iterations = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-r")) {
+        iterationTime = Long.parseLong(args[++k]);
+      } else if (args[k].equals("-json")) {
+        json = new File(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.err.println("optional parameters for the benchmarks are:");
+        System.err.println("\t-wi <number of warmup iterations>");
+        System.err.println("\t-w <time of a warmup iteration in milliseconds>");
+        System.err.println("\t-i <number of measurement iterations>");
+        System.err.println("\t-r <time of a measurement iteration in milliseconds>");
+        System.err.println("\t-json <file of the results in the JSON format of JMH>");
+        System.err.println("\t- regular expressions of the benchmarks to be run");
+        System.exit(1);
+      }
+    }
+    Pattern[] patterns = new Pattern[args.length - k];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = Pattern.compile(args[k + i]);
+    }
+    Benchmark benchmark = new Benchmark(warmupIterations, warmupTime, iterations, iterationTime);
+    MCBenchmark benchmarks = new MCBenchmark();
+    System.err.println("positions: " + benchmarks.getPositions().size() + " in " + POSITION_SEEDS.length + " games");
+    List<Benchmark.Result> results = new ArrayList<Benchmark.Result>();
+    for (Benchmark.Task task : benchmarks.getTasks()) {
+      String name = task.getParams().isEmpty() ? task.getName() : task.getName() + task.getParams().values();
+      boolean isSelected = patterns.length == 0;
+      for (Pattern pattern : patterns) {
+        isSelected |= pattern.matcher(name).find();
+      }
+      if (isSelected) {
+        System.err.println("running: " + name);
+        results.add(benchmark.measure(task));
+      }
+    }
+    System.out.print(Benchmark.toText(results));
+    if (json != null) {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(json), StandardCharsets.UTF_8);
+      try {
+        writer.write(Benchmark.toJson(results));
+        writer.write('\n');
+      } finally {
+        writer.close();
+      }
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.util.Locale;
+
+/**
+ * Packed representation of the {@link MCGame} board. Every cell holds a value
+ * from 0 to 3, so the 8X4 board is stored in a single long using 2 bits per
+ * cell. The cell (x, y) is the square 4 * x + y and its value is at the bits
+ * 2 * square and 2 * square + 1. The half of player 0 (rows 0-3) is in the low
+ * 32 bits, the half of player 1 (rows 4-7) is in the high 32 bits.
+ */
+public final class MCBitboard {
+
+  /** number of cells on the board */
+  public static final int CELLS = 32;
+  /** number of rows and columns of the board */
+  public static final int ROWS = 8, COLUMNS = 4;
+
+  /** low bit of every cell */
+  private static final long LOW = 0x5555555555555555L;
+  /** cells of the player 0 */
+  private static final long HALF = 0x00000000FFFFFFFFL;
+
+  private MCBitboard() {
+  }
+
+  /**
+   * Returns the square index of the specified cell.
+   * @param x row index
+   * @param y column index
+   * @return square index
+   */
+  public static int square(int x, int y) {
+    return (x << 2) | y;
+  }
+
+  /**
+   * Returns the color of the player whose half contains the specified square.
+   * @param square to be checked
+   * @return color of the owner
+   */
+  public static int half(int square) {
+    return square >>> 4;
+  }
+
+  /**
+   * Packs the specified board.
+   * @param board 8X4 game board
+   * @return packed board
+   */
+  public static long pack(int[][] board) {
+    long bits = 0;
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = 0; j < COLUMNS; j++) {
+        bits |= (long)board[i][j] << (square(i, j) << 1);
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Copies the packed board into the specified board.
+   * @param bits packed board
+   * @param board 8X4 game board stored to
+   */
+  public static void unpack(long bits, int[][] board) {
+    for (int i = 0; i < ROWS; i++) {
+      for (int j = 0; j < COLUMNS; j++) {
+        board[i][j] = get(bits, square(i, j));
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the specified square.
+   * @param bits packed board
+   * @param square square index
+   * @return value of the square
+   */
+  public static int get(long bits, int square) {
+    return (int)(bits >>> (square << 1)) & 3;
+  }
+
+  /**
+   * Returns the packed board with the specified value in the specified square.
+   * @param bits packed board
+   * @param square square index
+   * @param value new value of the square
+   * @return modified packed board
+   */
+  public static long set(long bits, int square, int value) {
+    int shift = square << 1;
+    return (bits & ~(3L << shift)) | ((long)value << shift);
+  }
+
+  /**
+   * Returns the occupied squares as a bit mask (bit i is the square i).
+   * @param bits packed board
+   * @return mask of the non-empty squares
+   */
+  public static int occupied(long bits) {
+    return compress((bits | (bits >>> 1)) & LOW);
+  }
+
+  /**
+   * Returns the squares that hold the specified value as a bit mask.
+   * @param bits packed board
+   * @param value figure value 1, 2 or 3
+   * @return mask of the squares
+   */
+  public static int cells(long bits, int value) {
+    return compress(select(bits, value));
+  }
+
+  /**
+   * Returns the number of figures in the half of the specified player.
+   * @param bits packed board
+   * @param color color of the player
+   * @return number of figures
+   */
+  public static int count(long bits, int color) {
+    return Long.bitCount((bits | (bits >>> 1)) & LOW & (color == 0 ? HALF : ~HALF));
+  }
+
+  /**
+   * Returns the number of figures of the specified value in the half of the
+   * specified player.
+   * @param bits packed board
+   * @param color color of the player
+   * @param value figure value 1, 2 or 3
+   * @return number of figures
+   */
+  public static int count(long bits, int color, int value) {
+    return Long.bitCount(select(bits, value) & (color == 0 ? HALF : ~HALF));
+  }
+
+  /**
+   * Counts the figures of the players in the same layout as the figures array
+   * of {@link MCGame}.
+   * @param bits packed board
+   * @param figures stored to, indexed by the color and by the value - 1
+   */
+  public static void count(long bits, int[][] figures) {
+    for (int color = 0; color < 2; color++) {
+      for (int value = 1; value <= 3; value++) {
+        figures[color][value - 1] = count(bits, color, value);
+      }
+    }
+  }
+
+  /**
+   * Returns the low bits of the cells that hold the specified value.
+   */
+  private static long select(long bits, int value) {
+    long lo = bits & LOW;
+    long hi = (bits >>> 1) & LOW;
+    switch (value) {
+    case 1:
+      return lo & ~hi;
+    case 2:
+      return hi & ~lo;
+    case 3:
+      return lo & hi;
+    default:
+      return LOW & ~(lo | hi);
+    }
+  }
+
+  /**
+   * Gathers the even bits of the specified long into an int.
+   */
+  private static int compress(long x) {
+    x = (x | (x >>> 1)) & 0x3333333333333333L;
+    x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+    x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+    x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+    x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+    return (int)x;
+  }
+
+  /**
+   * Returns the printable form of the packed board.
+   * @param bits packed board
+   * @return board in the format of {@link MCGame#toString()}
+   */
+  public static String toString(long bits) {
+    StringBuffer sb = new StringBuffer();
+    sb.append("  ");
+    for (int i = 0; i < COLUMNS; i++) {
+      sb.append(" " + i);
+    }
+    sb.append("\n\n");
+    for (int i = 0; i < ROWS; i++) {
+      sb.append(String.format(Locale.US, "%-2d", i));
+      for (int j = 0; j < COLUMNS; j++) {
+        int value = get(bits, square(i, j));
+        sb.append(" " + (value == MCGame.empty ? "*" : value));
+      }
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+}
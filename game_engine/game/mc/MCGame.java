@@ -27,6 +27,8 @@ import java.util.Random;
 
 import game.engine.Engine;
 import game.engine.Game;
+import game.engine.log.ActionCodec;
+import game.engine.log.GameLog;
 import game.engine.ui.Drawable;
 import game.engine.ui.GameApplication;
 import game.engine.ui.GameObject;
@@ -42,7 +44,7 @@ import javafx.scene.image.Image;
  * Implements the two-player Martian Chess
  * @see <a href="http://www.looneylabs.com/rules/martian-chess">Martian Chess</a>
  */
-public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
+public final class MCGame implements Game<MCPlayer, MCAction>, ActionCodec<MCAction>, Drawable {
 
   /** value of an empty cell on the board */
   public static final int empty = 0;
@@ -50,6 +52,7 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
   
   private final long seed;
   private final int[][] board;
+  private long bitboard;
   private final int[][] figures;
   private final int[] numFigures;
   private final MCPlayer[] players;
@@ -91,16 +94,8 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
     
     n = 8;
     m = 4;
-    board = new int[n][m];
-    board[0][0] = 3; board[n - 1][m - 1] = 3;
-    board[1][0] = 3; board[n - 2][m - 1] = 3;
-    board[0][1] = 3; board[n - 1][m - 2] = 3;
-    board[2][0] = 2; board[n - 3][m - 1] = 2;
-    board[1][1] = 2; board[n - 2][m - 2] = 2;
-    board[0][2] = 2; board[n - 1][m - 3] = 2;
-    board[2][1] = 1; board[n - 3][m - 2] = 1;
-    board[2][2] = 1; board[n - 3][m - 3] = 1;
-    board[1][2] = 1; board[n - 2][m - 3] = 1;
+    board = newBoard();
+    bitboard = MCBitboard.pack(board);
     
     figures = new int[players.length][3];
     numFigures = new int[players.length];
@@ -151,6 +146,26 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
     return players;
   }
 
+  /**
+   * Returns the start board of a game.
+   * @return 8X4 game board
+   */
+  public static int[][] newBoard() {
+    int n = MCBitboard.ROWS;
+    int m = MCBitboard.COLUMNS;
+    int[][] board = new int[n][m];
+    board[0][0] = 3; board[n - 1][m - 1] = 3;
+    board[1][0] = 3; board[n - 2][m - 1] = 3;
+    board[0][1] = 3; board[n - 1][m - 2] = 3;
+    board[2][0] = 2; board[n - 3][m - 1] = 2;
+    board[1][1] = 2; board[n - 2][m - 2] = 2;
+    board[0][2] = 2; board[n - 1][m - 3] = 2;
+    board[2][1] = 1; board[n - 3][m - 2] = 1;
+    board[2][2] = 1; board[n - 3][m - 3] = 1;
+    board[1][2] = 1; board[n - 2][m - 3] = 1;
+    return board;
+  }
+
   @Override
   public MCPlayer getNextPlayer() {
     MCPlayer player = null;
@@ -164,6 +179,21 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
   public boolean isValid(MCAction action) {
     return -1 != score(board, figures, prevAction, prevScore, currentPlayer, action);
   }
+
+  /**
+   * Returns the {@link MCMove} code of the specified action. Actions outside
+   * of the board are encoded as null, they are invalid the same way.
+   */
+  @Override
+  public int encode(MCAction action) {
+    int move = MCMove.encode(action);
+    return move == MCMove.NONE ? GameLog.NULL : move;
+  }
+
+  @Override
+  public MCAction decode(int code) {
+    return code == GameLog.NULL ? null : MCMove.toAction(code);
+  }
   
   /**
    * Returns the score of the specified action corresponds to the specified state or -1 for an invalid action.
@@ -324,6 +354,8 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
         board[action.x2][action.y2] = board[action.x1][action.y1];
       }
       board[action.x1][action.y1] = empty;
+      bitboard = MCBitboard.set(bitboard, MCBitboard.square(action.x2, action.y2), board[action.x2][action.y2]);
+      bitboard = MCBitboard.set(bitboard, MCBitboard.square(action.x1, action.y1), empty);
     }
     if (numFigures[currentPlayer] == 0) {
       numAlives--;
@@ -338,6 +370,14 @@ public final class MCGame implements Game<MCPlayer, MCAction>, Drawable {
     }
   }
 
+  /**
+   * Returns the current board in the packed form of {@link MCBitboard}.
+   * @return packed board
+   */
+  public long getBitboard() {
+    return bitboard;
+  }
+
   @Override
   public long getRemainingTime(MCPlayer player) {
     return player == null ? -1 : remainingTimes[player.color];
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import game.engine.log.GameArchive;
+import game.engine.log.GameLog;
+import game.engine.log.GameLogReader;
+
+/**
+ * Reusable buffers of a two-player {@link MCGame} record, that is read from a
+ * binary log or from a {@link GameArchive}.
+ */
+final class MCGameRecord {
+  String[] players;
+  double[] scores;
+  int[] codes = new int[256];
+  long[] elapsed = new long[256];
+  int count;
+
+  /**
+   * Reads the specified binary log.
+   * @param file log of a two-player game
+   * @throws IOException if the log can not be read, or it is not a log of a
+   * two-player {@link MCGame}
+   */
+  void read(File file) throws IOException {
+    GameLogReader reader = new GameLogReader(file);
+    try {
+      if (!MCGame.class.getName().equals(reader.getGameClass()) || reader.getParams().length != 4) {
+        throw new IOException("not a log of a two-player " + MCGame.class.getName());
+      }
+      players = Arrays.copyOfRange(reader.getParams(), 2, 4);
+      count = 0;
+      while (reader.next()) {
+        ensure(count + 1);
+        codes[count] = reader.getCode();
+        elapsed[count] = reader.getElapsed();
+        count++;
+      }
+      scores = reader.getScores();
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns whether the specified game of the archive can be read.
+   * @param archive archive of games
+   * @param game index of the game
+   * @return true for a two-player {@link MCGame}
+   */
+  static boolean isRecord(GameArchive archive, int game) {
+    return archive.getPlayers(game) == 2 && MCGame.class.getName().equals(archive.getGameClass(game));
+  }
+
+  /**
+   * Reads the specified game of the archive.
+   * @param archive archive of games
+   * @param game index of a game, see {@link #isRecord(GameArchive, int)}
+   */
+  void read(GameArchive archive, int game) {
+    players = new String[2];
+    scores = new double[2];
+    for (int color = 0; color < 2; color++) {
+      int slot = archive.getSlot(game, color);
+      players[color] = archive.getPlayer(slot);
+      scores[color] = archive.getScore(slot);
+    }
+    count = archive.getMoves(game);
+    ensure(count);
+    for (int i = 0; i < count; i++) {
+      codes[i] = archive.getCode(game, i);
+      elapsed[i] = archive.getElapsed(game, i);
+    }
+  }
+
+  /**
+   * Makes the specified logged move, if it is legal. A null or illegal move
+   * finishes the game by a time-out, so it does not change the position.
+   * @param position position of the game
+   * @param code action code of the move
+   * @param buffer buffer of the legal moves
+   * @return true if the move was made
+   */
+  static boolean play(MCPosition position, int code, int[] buffer) {
+    if (code == GameLog.NULL) {
+      return false;
+    }
+    int count = position.generate(buffer);
+    for (int i = 0; i < count; i++) {
+      if (buffer[i] == code) {
+        position.play(code);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void ensure(int size) {
+    if (codes.length < size) {
+      int length = Math.max(size, codes.length << 1);
+      codes = Arrays.copyOf(codes, length);
+      elapsed = Arrays.copyOf(elapsed, length);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+/**
+ * Int encoding of the {@link MCAction} actions. A move is stored in 10 bits as
+ * from * 32 + to, where from and to are the square indices of
+ * {@link MCBitboard}, so the row and the column indices are
+ * x1 * 128 + y1 * 32 + x2 * 4 + y2.
+ */
+public final class MCMove {
+
+  /** number of the different moves */
+  public static final int COUNT = 1024;
+  /** encoded value of a missing move */
+  public static final int NONE = -1;
+
+  private MCMove() {
+  }
+
+  /**
+   * Returns the encoded move.
+   * @param from square index of move from
+   * @param to square index of move to
+   * @return encoded move
+   */
+  public static int encode(int from, int to) {
+    return (from << 5) | to;
+  }
+
+  /**
+   * Returns the encoded move.
+   * @param x1 row index of move from
+   * @param y1 column index of move from
+   * @param x2 row index of move to
+   * @param y2 column index of move to
+   * @return encoded move
+   */
+  public static int encode(int x1, int y1, int x2, int y2) {
+    return (x1 << 7) | (y1 << 5) | (x2 << 2) | y2;
+  }
+
+  /**
+   * Returns the encoded form of the specified action.
+   * @param action to be encoded, can be null
+   * @return encoded move or {@link #NONE} for null or an action outside of the
+   * board
+   */
+  public static int encode(MCAction action) {
+    if (action == null || !isInside(action.x1, action.y1) || !isInside(action.x2, action.y2)) {
+      return NONE;
+    }
+    return encode(action.x1, action.y1, action.x2, action.y2);
+  }
+
+  /**
+   * Checks whether the specified cell is on the board.
+   * @param x row index
+   * @param y column index
+   * @return true, if the cell is on the board
+   */
+  public static boolean isInside(int x, int y) {
+    return 0 <= x && x < MCBitboard.ROWS && 0 <= y && y < MCBitboard.COLUMNS;
+  }
+
+  /**
+   * Returns the square index of move from.
+   * @param move encoded move
+   * @return square index
+   */
+  public static int from(int move) {
+    return move >>> 5;
+  }
+
+  /**
+   * Returns the square index of move to.
+   * @param move encoded move
+   * @return square index
+   */
+  public static int to(int move) {
+    return move & 31;
+  }
+
+  /** @return row index of move from */
+  public static int x1(int move) {
+    return move >>> 7;
+  }
+
+  /** @return column index of move from */
+  public static int y1(int move) {
+    return (move >>> 5) & 3;
+  }
+
+  /** @return row index of move to */
+  public static int x2(int move) {
+    return (move >>> 2) & 7;
+  }
+
+  /** @return column index of move to */
+  public static int y2(int move) {
+    return move & 3;
+  }
+
+  /**
+   * Returns the move in the opposite direction.
+   * @param move encoded move
+   * @return reversed move
+   */
+  public static int reverse(int move) {
+    return encode(to(move), from(move));
+  }
+
+  /**
+   * Returns the shared action instance of the specified move.
+   * @param move encoded move or {@link #NONE}
+   * @return action or null for {@link #NONE}
+   */
+  public static MCAction toAction(int move) {
+    return move == NONE ? null : MCAction.of(move);
+  }
+
+  /**
+   * Returns the printable form of the move in the format of {@link MCAction}.
+   * @param move encoded move
+   * @return printable form
+   */
+  public static String toString(int move) {
+    return move == NONE ? "null" : x1(move) + ", " + y1(move) + " -> " + x2(move) + ", " + y2(move);
+  }
+}
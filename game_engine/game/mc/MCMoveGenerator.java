@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+/**
+ * Generates the legal moves of a player on a packed board (see
+ * {@link MCBitboard}). The generated moves are exactly the actions for which
+ * {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)} does
+ * not return -1, in the order of increasing from and to squares. The moves are
+ * encoded by {@link MCMove}.
+ */
+public final class MCMoveGenerator {
+
+  /** upper bound of the number of legal moves of a player */
+  public static final int MAX_MOVES = 256;
+
+  /** squares of the player 0 and the player 1 */
+  private static final int[] HALVES = {0x0000FFFF, 0xFFFF0000};
+
+  /** reachable squares of a pawn, a drone and a queen from a square */
+  static final int[] PAWN_REACH = new int[MCBitboard.CELLS];
+  static final int[] DRONE_REACH = new int[MCBitboard.CELLS];
+  static final int[] QUEEN_REACH = new int[MCBitboard.CELLS];
+  /** squares between two squares of a line, indexed by from * 32 + to */
+  static final int[] BETWEEN = new int[MCBitboard.CELLS * MCBitboard.CELLS];
+
+  static {
+    for (int from = 0; from < MCBitboard.CELLS; from++) {
+      int x1 = from >>> 2, y1 = from & 3;
+      for (int to = 0; to < MCBitboard.CELLS; to++) {
+        int x2 = to >>> 2, y2 = to & 3;
+        int xdiff = x2 - x1, ydiff = y2 - y1;
+        if (from == to) {
+          continue;
+        }
+        if (Math.abs(xdiff) == 1 && Math.abs(ydiff) == 1) {
+          PAWN_REACH[from] |= 1 << to;
+        }
+        if ((xdiff == 0 && Math.abs(ydiff) <= 2) || (ydiff == 0 && Math.abs(xdiff) <= 2)) {
+          DRONE_REACH[from] |= 1 << to;
+        }
+        if (xdiff == 0 || ydiff == 0 || Math.abs(xdiff) == Math.abs(ydiff)) {
+          QUEEN_REACH[from] |= 1 << to;
+          int steps = Math.max(Math.abs(xdiff), Math.abs(ydiff));
+          for (int i = 1; i < steps; i++) {
+            BETWEEN[MCMove.encode(from, to)] |= 1 << MCBitboard.square(x1 + i * Integer.signum(xdiff), y1 + i * Integer.signum(ydiff));
+          }
+        }
+      }
+    }
+  }
+
+  private MCMoveGenerator() {
+  }
+
+  /**
+   * Writes the legal moves of the specified player into the specified buffer.
+   * The arguments are the same as the arguments of
+   * {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)}.
+   * @param board current board
+   * @param figures the number of available figures of the players
+   * @param prevAction previous action
+   * @param prevScore score of the previous action
+   * @param color color of the current player
+   * @param moves buffer of at least {@link #MAX_MOVES} length
+   * @return the number of the generated moves
+   */
+  public static int generate(int[][] board, int[][] figures, MCAction prevAction, int prevScore, int color, int[] moves) {
+    return generate(MCBitboard.pack(board), figures[color][1] == 0, figures[color][2] == 0, MCMove.encode(prevAction), prevScore, color, moves);
+  }
+
+  /**
+   * Writes the legal moves of the specified player into the specified buffer.
+   * The number of figures, that limits the merges, is counted on the board.
+   * @param board packed board
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param color color of the current player
+   * @param moves buffer of at least {@link #MAX_MOVES} length
+   * @return the number of the generated moves
+   */
+  public static int generate(long board, int prevMove, int prevScore, int color, int[] moves) {
+    return generate(board, MCBitboard.count(board, color, 2) == 0, MCBitboard.count(board, color, 3) == 0, prevMove, prevScore, color, moves);
+  }
+
+  private static int generate(long board, boolean noDrone, boolean noQueen, int prevMove, int prevScore, int color, int[] moves) {
+    int own = HALVES[color];
+    int occupied = MCBitboard.occupied(board);
+    int pawns = MCBitboard.cells(board, 1);
+    int drones = MCBitboard.cells(board, 2);
+    // own figures that can not be merged into by a pawn or a drone
+    int pawnBlocked = occupied & own & ~((noDrone ? pawns : 0) | (noQueen ? drones : 0));
+    int droneBlocked = occupied & own & ~(noQueen ? pawns : 0);
+    // can not be reversed a move, except it was a hit
+    int reversed = prevMove != MCMove.NONE && prevScore == 0 ? MCMove.reverse(prevMove) : MCMove.NONE;
+    int n = 0;
+    for (int figures = occupied & own; figures != 0; figures &= figures - 1) {
+      int from = Integer.numberOfTrailingZeros(figures);
+      int targets;
+      switch (MCBitboard.get(board, from)) {
+      case 1:
+        targets = PAWN_REACH[from] & ~pawnBlocked;
+        break;
+      case 2:
+        targets = DRONE_REACH[from] & ~droneBlocked;
+        break;
+      default:
+        targets = QUEEN_REACH[from] & ~(occupied & own);
+        break;
+      }
+      for (; targets != 0; targets &= targets - 1) {
+        int move = MCMove.encode(from, Integer.numberOfTrailingZeros(targets));
+        if ((BETWEEN[move] & occupied) == 0 && move != reversed) {
+          moves[n++] = move;
+        }
+      }
+    }
+    return n;
+  }
+}
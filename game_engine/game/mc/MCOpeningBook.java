@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import game.engine.log.GameArchive;
+import game.engine.log.GameLog;
+
+/**
+ * Opening book of the {@link MCGame} game, built from game records. The book
+ * stores the statistics of the moves played in the first plies: the number of
+ * games, wins and draws of the mover. The entries are sorted by the
+ * {@link MCZobrist} hash of the position and the move in a file, that is
+ * memory-mapped, so a lookup is a binary search in the mapped pages and the
+ * book is not loaded onto the heap. The books are shared by the players of a
+ * process by {@link #open(File)}, and the pages are shared by the processes
+ * by the operating system.
+ * <p>
+ * The file starts with the magic bytes, the version and the number of the
+ * entries. An entry is the hash (8 bytes), the move, the games, the wins and
+ * the draws (4 bytes each), in big-endian byte order.
+ */
+public final class MCOpeningBook {
+
+  /** system property of the book file, that is used by the players */
+  public static final String PROPERTY = "game.mc.book";
+  /** default number of plies stored by the builder */
+  public static final int DEFAULT_PLIES = 12;
+  /** default number of games of a move to be chosen */
+  public static final int DEFAULT_MIN_GAMES = 3;
+  /** first bytes of a book: "GBOK" */
+  private static final int MAGIC = 0x47424F4B;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 4 + 4;
+  private static final int ENTRY_SIZE = 8 + 4 * 4;
+
+  private static final Map<String, MCOpeningBook> books = new ConcurrentHashMap<String, MCOpeningBook>();
+
+  private final ByteBuffer entries;
+  private final int size;
+
+  private MCOpeningBook(File file) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("not an opening book: " + file);
+      }
+      size = buffer.getInt(8);
+      if (buffer.limit() < HEADER_SIZE + (long)size * ENTRY_SIZE) {
+        throw new IOException("truncated opening book: " + file);
+      }
+      buffer.position(HEADER_SIZE);
+      entries = buffer.slice();
+    } finally {
+      // the mapping remains valid
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the book of the specified file, that is mapped once per process.
+   * @param file book file
+   * @return the book
+   * @throws IOException if the file can not be read
+   */
+  public static MCOpeningBook open(File file) throws IOException {
+    String path = file.getCanonicalPath();
+    MCOpeningBook book = books.get(path);
+    if (book == null) {
+      synchronized (books) {
+        book = books.get(path);
+        if (book == null) {
+          book = new MCOpeningBook(file);
+          books.put(path, book);
+        }
+      }
+    }
+    return book;
+  }
+
+  /**
+   * Returns the book of the file set by the {@link #PROPERTY} system property.
+   * @return the book or null if the property is not set or the file can not be
+   * read
+   */
+  public static MCOpeningBook getDefault() {
+    String name = System.getProperty(PROPERTY);
+    if (name == null) {
+      return null;
+    }
+    try {
+      return open(new File(name));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the number of the entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the first entry of the specified position by binary search.
+   * @param key hash of the position, see {@link MCZobrist#hash(long, int, int, int)}
+   * @return index of the entry or -1 if the position is not in the book
+   */
+  public int find(long key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getKey(mid) < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low < size && getKey(low) == key ? low : -1;
+  }
+
+  public long getKey(int entry) {
+    return entries.getLong(entry * ENTRY_SIZE);
+  }
+
+  public int getMove(int entry) {
+    return entries.getInt(entry * ENTRY_SIZE + 8);
+  }
+
+  public int getGames(int entry) {
+    return entries.getInt(entry * ENTRY_SIZE + 12);
+  }
+
+  public int getWins(int entry) {
+    return entries.getInt(entry * ENTRY_SIZE + 16);
+  }
+
+  public int getDraws(int entry) {
+    return entries.getInt(entry * ENTRY_SIZE + 20);
+  }
+
+  /**
+   * Chooses the legal move of the specified position with the best expected
+   * score, counting a draw as half a win, from the moves played in at least
+   * the specified number of games.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param minGames minimal number of games of the move
+   * @return book move or {@link MCMove#NONE}
+   */
+  public int choose(long board, int color, int prevMove, int prevScore, int minGames) {
+    long key = MCZobrist.hash(board, color, prevMove, prevScore);
+    int entry = find(key);
+    if (entry < 0) {
+      return MCMove.NONE;
+    }
+    int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    int count = MCMoveGenerator.generate(board, prevMove, prevScore, color, moves);
+    int best = MCMove.NONE;
+    double bestValue = -1;
+    for (; entry < size && getKey(entry) == key; entry++) {
+      int games = getGames(entry);
+      int move = getMove(entry);
+      // the hash of another position can be the same
+      if (games < minGames || !contains(moves, count, move)) {
+        continue;
+      }
+      double value = (getWins(entry) + 0.5 * getDraws(entry) + 1) / (games + 2);
+      if (bestValue < value) {
+        bestValue = value;
+        best = move;
+      }
+    }
+    return best;
+  }
+
+  private static boolean contains(int[] moves, int count, int move) {
+    for (int i = 0; i < count; i++) {
+      if (moves[i] == move) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects the move statistics of game records and writes a book.
+   */
+  public static final class Builder {
+    private final int plies;
+    /** statistics of the positions: move, games, wins and draws per move */
+    private final Map<Long, int[]> positions = new HashMap<Long, int[]>();
+    private final MCPosition position = new MCPosition(MCGame.newBoard());
+    private final long start = position.getBoard();
+    private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    private final MCGameRecord record = new MCGameRecord();
+    private long games;
+
+    /**
+     * @param plies number of the plies of a game to be stored
+     */
+    public Builder(int plies) {
+      this.plies = plies;
+    }
+
+    /**
+     * Adds the specified binary log.
+     * @param file log of a two-player {@link MCGame}
+     * @throws IOException if the log can not be read
+     */
+    public void add(File file) throws IOException {
+      record.read(file);
+      add(record);
+    }
+
+    /**
+     * Adds the games of the specified archive.
+     * @param archive archive of games
+     */
+    public void add(GameArchive archive) {
+      for (int game = 0; game < archive.getGames(); game++) {
+        if (MCGameRecord.isRecord(archive, game)) {
+          record.read(archive, game);
+          add(record);
+        }
+      }
+    }
+
+    private void add(MCGameRecord record) {
+      games++;
+      position.set(start);
+      for (int i = 0; i < Math.min(plies, record.count); i++) {
+        int color = position.getColor();
+        long key = MCZobrist.hash(position.getBoard(), color, position.getPrevMove(), position.getPrevScore());
+        int code = record.codes[i];
+        if (!MCGameRecord.play(position, code, moves)) {
+          break;
+        }
+        int result = Double.compare(record.scores[color], record.scores[1 - color]);
+        int[] stats = positions.get(key);
+        int j = 0;
+        while (stats != null && j < stats.length && stats[j] != code) {
+          j += 4;
+        }
+        if (stats == null || j == stats.length) {
+          stats = stats == null ? new int[4] : Arrays.copyOf(stats, stats.length + 4);
+          stats[j] = code;
+          positions.put(key, stats);
+        }
+        stats[j + 1]++;
+        if (0 < result) {
+          stats[j + 2]++;
+        } else if (result == 0) {
+          stats[j + 3]++;
+        }
+      }
+    }
+
+    /**
+     * @return the number of the added games
+     */
+    public long getGames() {
+      return games;
+    }
+
+    /**
+     * Writes the book with the moves played in at least the specified number
+     * of games.
+     * @param file book file
+     * @param minGames minimal number of games of a move
+     * @return the number of the written entries
+     * @throws IOException if the file can not be written
+     */
+    public int write(File file, int minGames) throws IOException {
+      long[] keys = new long[positions.size()];
+      int n = 0;
+      for (Long key : positions.keySet()) {
+        keys[n++] = key;
+      }
+      Arrays.sort(keys);
+      int count = 0;
+      for (int[] stats : positions.values()) {
+        for (int j = 0; j < stats.length; j += 4) {
+          if (minGames <= stats[j + 1]) {
+            count++;
+          }
+        }
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * ENTRY_SIZE);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(count);
+      for (long key : keys) {
+        int[] stats = positions.get(key);
+        // the moves of a position are sorted too
+        List<Integer> order = new ArrayList<Integer>();
+        for (int j = 0; j < stats.length; j += 4) {
+          if (minGames <= stats[j + 1]) {
+            order.add(stats[j] << 16 | j);
+          }
+        }
+        Collections.sort(order);
+        for (int o : order) {
+          int j = o & 0xFFFF;
+          buffer.putLong(key);
+          buffer.putInt(stats[j]);
+          buffer.putInt(stats[j + 1]);
+          buffer.putInt(stats[j + 2]);
+          buffer.putInt(stats[j + 3]);
+        }
+      }
+      buffer.flip();
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      } finally {
+        channel.close();
+      }
+      return count;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int plies = DEFAULT_PLIES;
+    int minGames = 1;
+    int k = 0;
+    for (; k + 1 < args.length && args[k].startsWith("-"); k++) {
+      if (args[k].equals("-plies")) {
+        plies = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-min")) {
+        minGames = Integer.parseInt(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    if (args.length < k + 2) {
+      System.err.println("optional parameters for the book builder are:");
+      System.err.println("\t-plies <number of plies of a game>");
+      System.err.println("\t-min <minimal number of games of a move>");
+      System.err.println("required parameters for the book builder are:");
+      System.err.println("\t- book file");
+      System.err.println("\t- directories of binary logs, game archives or logs");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    Builder builder = new Builder(plies);
+    for (int i = k + 1; i < args.length; i++) {
+      File input = new File(args[i]);
+      if (input.isDirectory()) {
+        DirectoryStream<Path> files = Files.newDirectoryStream(input.toPath(), "*" + GameLog.EXTENSION);
+        try {
+          for (Path file : files) {
+            addLog(builder, file.toFile());
+          }
+        } finally {
+          files.close();
+        }
+      } else if (GameLog.isGameLog(input)) {
+        addLog(builder, input);
+      } else {
+        GameArchive archive = new GameArchive(input);
+        try {
+          builder.add(archive);
+        } finally {
+          archive.close();
+        }
+      }
+    }
+    int count = builder.write(new File(args[k]), minGames);
+    System.out.println(args[k] + ": " + builder.getGames() + " games, " + count + " entries (" + (System.nanoTime() - start) / 1000000 + " ms)");
+    System.exit(0);
+  }
+
+  private static void addLog(Builder builder, File file) {
+    try {
+      builder.add(file);
+    } catch (IOException e) {
+      System.err.println("can not read " + file + ": " + e.getMessage());
+    }
+  }
+}
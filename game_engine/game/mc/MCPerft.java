@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the move tree of the {@link MCGame} game to a fixed
+ * depth (perft), so the move generation can be checked against known counts
+ * and its speed can be measured. The moves are generated by
+ * {@link MCMoveGenerator}, so the reversal rule and the merge limits by the
+ * number of figures are respected. Finished games are not continued, so
+ * they are leaves only at the full depth.
+ * <p>
+ * The subtrees of the root moves are counted in parallel on a
+ * {@link ForkJoinPool}, every root move on its own {@link MCPosition}. In the
+ * checking mode the generated moves of every inner node are compared with the
+ * moves accepted by {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)},
+ * and their scores with the scores of the game.
+ * <p>
+ * The counts of the initial layout are 10, 104, 1329, 17466, 269253, 4218856,
+ * 74854563 and 1338627629 to the depths 1-8.
+ */
+public final class MCPerft {
+
+  private final ForkJoinPool pool;
+  private final boolean isCheck;
+
+  /**
+   * Creates a perft counter.
+   * @param pool pool of the root moves
+   * @param isCheck whether the moves are checked by {@link MCGame#score}
+   */
+  public MCPerft(ForkJoinPool pool, boolean isCheck) {
+    this.pool = pool;
+    this.isCheck = isCheck;
+  }
+
+  /**
+   * Returns the number of the leaf nodes of the specified depth.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param depth number of plies
+   * @return number of the leaf nodes
+   */
+  public long perft(long board, int color, int prevMove, int prevScore, int depth) {
+    long nodes = 0;
+    for (long count : divide(board, color, prevMove, prevScore, depth)[1]) {
+      nodes += count;
+    }
+    return depth == 0 ? 1 : nodes;
+  }
+
+  /**
+   * Returns the root moves and the number of the leaf nodes of their subtrees.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param depth number of plies, at least 1 for any root moves
+   * @return the root moves and the leaf counts in two arrays of the same length
+   */
+  public long[][] divide(long board, int color, int prevMove, int prevScore, int depth) {
+    if (depth < 1) {
+      return new long[2][0];
+    }
+    MCPosition position = new MCPosition(board);
+    position.setState(color, prevMove, prevScore, 0, 0);
+    int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    int n = position.generate(moves);
+    if (isCheck) {
+      check(position, moves, n);
+    }
+    List<Subtree> tasks = new ArrayList<Subtree>();
+    for (int i = 0; i < n; i++) {
+      tasks.add(new Subtree(board, color, prevMove, prevScore, moves[i], depth - 1));
+    }
+    if (pool != null) {
+      for (Subtree task : tasks) {
+        pool.execute(task);
+      }
+    }
+    long[][] result = new long[2][n];
+    for (int i = 0; i < n; i++) {
+      result[0][i] = moves[i];
+      result[1][i] = pool == null ? tasks.get(i).compute() : tasks.get(i).join();
+    }
+    return result;
+  }
+
+  /**
+   * Counts the leaf nodes of the specified depth below the position.
+   * @param moves buffers of the plies, indexed by the remaining depth
+   */
+  private long count(MCPosition position, int depth, int[][] moves) {
+    if (depth == 0) {
+      return 1;
+    }
+    if (position.isFinished()) {
+      return 0;
+    }
+    int[] buffer = moves[depth];
+    int n = position.generate(buffer);
+    if (isCheck) {
+      check(position, buffer, n);
+    }
+    if (depth == 1) {
+      return n;
+    }
+    long nodes = 0;
+    for (int i = 0; i < n; i++) {
+      position.make(buffer[i]);
+      nodes += count(position, depth - 1, moves);
+      position.unmake();
+    }
+    return nodes;
+  }
+
+  /**
+   * Compares the generated moves with the moves accepted by the game.
+   * @throws IllegalStateException if they are different
+   */
+  private static void check(MCPosition position, int[] moves, int n) {
+    int[][] board = new int[MCBitboard.ROWS][MCBitboard.COLUMNS];
+    MCBitboard.unpack(position.getBoard(), board);
+    MCAction prevAction = MCMove.toAction(position.getPrevMove());
+    boolean[] isGenerated = new boolean[MCMove.COUNT];
+    for (int i = 0; i < n; i++) {
+      isGenerated[moves[i]] = true;
+    }
+    for (int move = 0; move < MCMove.COUNT; move++) {
+      int score = MCGame.score(board, position.getFigures(), prevAction, position.getPrevScore(), position.getColor(), MCMove.toAction(move));
+      if (isGenerated[move] != (0 <= score) || (isGenerated[move] && score != position.score(move))) {
+        throw new IllegalStateException("move " + MCMove.toString(move) + (isGenerated[move] ? " is generated" : " is not generated")
+            + " with score " + position.score(move) + ", game score: " + score + ", color: " + position.getColor()
+            + ", previous move: " + MCMove.toString(position.getPrevMove()) + " (" + position.getPrevScore() + ")\n" + position);
+      }
+    }
+  }
+
+  /**
+   * Counts the subtree of a root move on its own position.
+   */
+  private final class Subtree extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    private final long board;
+    private final int color;
+    private final int prevMove;
+    private final int prevScore;
+    private final int move;
+    private final int depth;
+
+    private Subtree(long board, int color, int prevMove, int prevScore, int move, int depth) {
+      this.board = board;
+      this.color = color;
+      this.prevMove = prevMove;
+      this.prevScore = prevScore;
+      this.move = move;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      MCPosition position = new MCPosition(board);
+      position.setState(color, prevMove, prevScore, 0, 0);
+      position.make(move);
+      return count(position, depth, new int[depth + 1][MCMoveGenerator.MAX_MOVES]);
+    }
+  }
+
+  /**
+   * Parses a board of 32 digits of the cell values row by row, '/'
+   * characters can separate the rows.
+   * @param s board text
+   * @return packed board
+   * @throws IllegalArgumentException if the text is not a board
+   */
+  public static long parseBoard(String s) {
+    String digits = s.replace("/", "");
+    if (digits.length() != MCBitboard.CELLS) {
+      throw new IllegalArgumentException("board of " + MCBitboard.CELLS + " cells is required: " + s);
+    }
+    long board = 0;
+    for (int i = 0; i < MCBitboard.CELLS; i++) {
+      int value = digits.charAt(i) - '0';
+      if (value < 0 || 3 < value) {
+        throw new IllegalArgumentException("invalid cell value: " + digits.charAt(i));
+      }
+      board = MCBitboard.set(board, MCBitboard.square(i / MCBitboard.COLUMNS, i % MCBitboard.COLUMNS), value);
+    }
+    return board;
+  }
+
+  /**
+   * Parses a move in the x1,y1,x2,y2 form.
+   * @param s move text
+   * @return encoded move
+   * @throws IllegalArgumentException if the text is not a move
+   */
+  public static int parseMove(String s) {
+    String[] parts = s.split(",");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("move in the x1,y1,x2,y2 form is required: " + s);
+    }
+    int[] c = new int[4];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = Integer.parseInt(parts[i].trim());
+    }
+    if (!MCMove.isInside(c[0], c[1]) || !MCMove.isInside(c[2], c[3])) {
+      throw new IllegalArgumentException("move outside of the board: " + s);
+    }
+    return MCMove.encode(c[0], c[1], c[2], c[3]);
+  }
+
+  public static void main(String[] args) throws Exception {
+    long board = MCBitboard.pack(MCGame.newBoard());
+    int color = 0;
+    int prevMove = MCMove.NONE;
+    int prevScore = 0;
+    boolean isDivide = false;
+    boolean isCheck = false;
+    long expected = -1;
+    int threads = Runtime.getRuntime().availableProcessors();
+    int k = 0;
+    for (; k + 1 < args.length && args[k].startsWith("-"); k++) {
+      if (args[k].equals("-board")) {
+        board = parseBoard(args[++k]);
+      } else if (args[k].equals("-color")) {
+        color = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-prev")) {
+        prevMove = parseMove(args[++k]);
+      } else if (args[k].equals("-prevScore")) {
+        prevScore = Integer.parseInt(args[++k]);
+      } else if (args[k].equals("-divide")) {
+        isDivide = true;
+      } else if (args[k].equals("-check")) {
+        isCheck = true;
+      } else if (args[k].equals("-expect")) {
+        expected = Long.parseLong(args[++k]);
+      } else if (args[k].equals("-threads")) {
+        threads = Integer.parseInt(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    if (args.length != k + 1 || (color != 0 && color != 1)) {
+      System.err.println("optional parameters for the perft are:");
+      System.err.println("\t-board <32 cell values row by row, rows can be separated by '/'>");
+      System.err.println("\t-color <color of the player to move>");
+      System.err.println("\t-prev <previous move as x1,y1,x2,y2>");
+      System.err.println("\t-prevScore <score of the previous move>");
+      System.err.println("\t-divide (counts of the root moves at the depth)");
+      System.err.println("\t-check (moves are checked by the rules of the game)");
+      System.err.println("\t-expect <expected count at the depth>");
+      System.err.println("\t-threads <number of worker threads>");
+      System.err.println("required parameters for the perft are:");
+      System.err.println("\t- depth");
+      System.exit(1);
+    }
+    int depth = Integer.parseInt(args[k]);
+    ForkJoinPool pool = threads <= 1 ? null : new ForkJoinPool(threads);
+    MCPerft perft = new MCPerft(pool, isCheck);
+    System.out.print(MCBitboard.toString(board));
+    long nodes = 0;
+    if (isDivide) {
+      long start = System.nanoTime();
+      long[][] result = perft.divide(board, color, prevMove, prevScore, depth);
+      for (int i = 0; i < result[0].length; i++) {
+        System.out.println(MCMove.toString((int)result[0][i]) + ": " + result[1][i]);
+        nodes += result[1][i];
+      }
+      print(depth, nodes, System.nanoTime() - start);
+    } else {
+      for (int d = 1; d <= depth; d++) {
+        long start = System.nanoTime();
+        nodes = perft.perft(board, color, prevMove, prevScore, d);
+        print(d, nodes, System.nanoTime() - start);
+      }
+    }
+    if (pool != null) {
+      pool.shutdown();
+    }
+    if (0 <= expected && nodes != expected) {
+      System.err.println("expected: " + expected + ", counted: " + nodes);
+      System.exit(1);
+    }
+  }
+
+  private static void print(int depth, long nodes, long elapsed) {
+    System.out.println("depth " + depth + ": " + nodes + " nodes (" + elapsed / 1000000 + " ms, " + (long)(nodes * 1e9 / Math.max(1, elapsed)) + " nodes/s)");
+  }
+}
@@ -51,6 +51,14 @@ public abstract class MCPlayer implements Player<MCAction> {
   @Override
   public abstract MCAction getAction(List<Pair<Integer, MCAction>> prevActions);
   
+  /**
+   * Returns the board of the player in the packed form of {@link MCBitboard}.
+   * @return packed board
+   */
+  public final long getBitboard() {
+    return MCBitboard.pack(board);
+  }
+  
   @Override
   public final int getColor() {
     return color;
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+/**
+ * Mutable position of the {@link MCGame} game. Stores the packed board and
+ * keeps the number of figures of the players up to date while moves are
+ * applied and undone, the same way as {@link MCGame#setAction} does. The
+ * {@link MCZobrist} hash of the board is updated incrementally as well.
+ * <p>
+ * {@link #apply(int)} and {@link #undo(int, int)} change the board only.
+ * {@link #make(int)} and {@link #unmake()} maintain the game state too: the
+ * player to move, the previous move and its score, and the scores of the
+ * players. They keep the undone information on a fixed-size stack, so they
+ * do not allocate. The moves of a game are played by {@link #play(int)},
+ * that maintains the game state without the stack.
+ */
+public final class MCPosition {
+
+  /** maximal number of moves that can be made and not unmade */
+  public static final int MAX_DEPTH = 1024;
+
+  private long board;
+  private long hash;
+  private final int[][] figures = new int[2][3];
+  private final int[] numFigures = new int[2];
+  private int color;
+  private int prevMove;
+  private int prevScore;
+  private final int[] scores = new int[2];
+  /** made moves with the target values and the previous states */
+  private final int[] stack = new int[MAX_DEPTH];
+  private int depth;
+
+  /**
+   * Position of the specified board.
+   * @param board 8X4 game board
+   */
+  public MCPosition(int[][] board) {
+    set(MCBitboard.pack(board));
+  }
+
+  /**
+   * Position of the specified packed board.
+   * @param board packed board
+   */
+  public MCPosition(long board) {
+    set(board);
+  }
+
+  /**
+   * Sets the specified packed board and counts its figures. The game state is
+   * reset: the player 0 is to move without scores and previous move.
+   * @param board packed board
+   */
+  public void set(long board) {
+    this.board = board;
+    hash = MCZobrist.hash(board);
+    MCBitboard.count(board, figures);
+    for (int i = 0; i < numFigures.length; i++) {
+      numFigures[i] = MCBitboard.count(board, i);
+    }
+    setState(0, MCMove.NONE, 0, 0, 0);
+  }
+
+  /**
+   * Sets the game state of the position and clears the made moves.
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param score0 score of the player 0
+   * @param score1 score of the player 1
+   */
+  public void setState(int color, int prevMove, int prevScore, int score0, int score1) {
+    this.color = color;
+    this.prevMove = prevMove;
+    this.prevScore = prevScore;
+    scores[0] = score0;
+    scores[1] = score1;
+    depth = 0;
+  }
+
+  /**
+   * Returns the packed board.
+   * @return packed board
+   */
+  public long getBoard() {
+    return board;
+  }
+
+  /**
+   * Returns the hash of the cell contents, see {@link MCZobrist#hash(long)}.
+   * The key of the player to move and of the reversal restriction is given
+   * by {@link MCZobrist#state(int, int, int)}.
+   * @return board hash
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  /**
+   * Returns the value of the specified square.
+   * @param square square index
+   * @return value of the square
+   */
+  public int get(int square) {
+    return MCBitboard.get(board, square);
+  }
+
+  /**
+   * Returns the number of figures of the players in the layout of the figures
+   * parameter of {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)}.
+   * The returned array is updated by the position and must not be modified.
+   * @return the number of figures indexed by the color and by the value - 1
+   */
+  public int[][] getFigures() {
+    return figures;
+  }
+
+  /**
+   * Returns the number of figures of the specified player.
+   * @param color color of the player
+   * @return the number of figures in the half of the player
+   */
+  public int getNumFigures(int color) {
+    return numFigures[color];
+  }
+
+  /**
+   * Applies the specified legal move: a step, a merge or a move into the other
+   * half, that can be a hit.
+   * @param move encoded by {@link MCMove}
+   * @return previous value of the target square, that is the score of the move
+   * if it goes into the other half, and it is required by {@link #undo(int, int)}
+   */
+  public int apply(int move) {
+    int from = MCMove.from(move);
+    int to = MCMove.to(move);
+    int color = MCBitboard.half(from);
+    int value = MCBitboard.get(board, from);
+    int target = MCBitboard.get(board, to);
+    if (MCBitboard.half(to) == color) {
+      if (target != MCGame.empty) {
+        // merge
+        figures[color][value - 1]--;
+        figures[color][target - 1]--;
+        figures[color][value + target - 1]++;
+        numFigures[color]--;
+      }
+      board = MCBitboard.set(board, to, value + target);
+      hash ^= MCZobrist.cell(to, target) ^ MCZobrist.cell(to, value + target);
+    } else {
+      figures[color][value - 1]--;
+      figures[1 - color][value - 1]++;
+      numFigures[color]--;
+      numFigures[1 - color]++;
+      if (target != MCGame.empty) {
+        // hit
+        figures[1 - color][target - 1]--;
+        numFigures[1 - color]--;
+      }
+      board = MCBitboard.set(board, to, value);
+      hash ^= MCZobrist.cell(to, target) ^ MCZobrist.cell(to, value);
+    }
+    board = MCBitboard.set(board, from, MCGame.empty);
+    hash ^= MCZobrist.cell(from, value);
+    return target;
+  }
+
+  /**
+   * Undoes the specified move, that was the last applied one.
+   * @param move encoded by {@link MCMove}
+   * @param target the value returned by {@link #apply(int)}
+   */
+  public void undo(int move, int target) {
+    int from = MCMove.from(move);
+    int to = MCMove.to(move);
+    int color = MCBitboard.half(from);
+    int value = MCBitboard.get(board, to);
+    hash ^= MCZobrist.cell(to, value) ^ MCZobrist.cell(to, target);
+    if (MCBitboard.half(to) == color) {
+      if (target != MCGame.empty) {
+        // merge
+        figures[color][value - 1]--;
+        value -= target;
+        figures[color][value - 1]++;
+        figures[color][target - 1]++;
+        numFigures[color]++;
+      }
+    } else {
+      figures[color][value - 1]++;
+      figures[1 - color][value - 1]--;
+      numFigures[color]++;
+      numFigures[1 - color]--;
+      if (target != MCGame.empty) {
+        // hit
+        figures[1 - color][target - 1]++;
+        numFigures[1 - color]++;
+      }
+    }
+    board = MCBitboard.set(MCBitboard.set(board, to, target), from, value);
+    hash ^= MCZobrist.cell(from, value);
+  }
+
+  /**
+   * Returns the score of the specified legal move.
+   * @param move encoded by {@link MCMove}
+   * @return value of the target square if the move goes into the other half,
+   * 0 otherwise
+   */
+  public int score(int move) {
+    int to = MCMove.to(move);
+    return MCBitboard.half(MCMove.from(move)) == MCBitboard.half(to) ? 0 : MCBitboard.get(board, to);
+  }
+
+  /**
+   * Writes the legal moves of the player to move into the specified buffer,
+   * see {@link MCMoveGenerator#generate(long, int, int, int, int[])}.
+   * @param moves buffer of at least {@link MCMoveGenerator#MAX_MOVES} length
+   * @return the number of the generated moves
+   */
+  public int generate(int[] moves) {
+    return MCMoveGenerator.generate(board, prevMove, prevScore, color, moves);
+  }
+
+  /**
+   * Makes the specified legal move, the mover is the owner of the from square.
+   * Updates the score of the mover, the previous move and the player to move.
+   * @param move encoded by {@link MCMove}
+   * @return score of the move
+   */
+  public int make(int move) {
+    int mover = MCBitboard.half(MCMove.from(move));
+    int score = score(move);
+    int target = apply(move);
+    stack[depth++] = (move + 1) | ((prevMove + 1) << 11) | (prevScore << 22) | (target << 24) | (color << 26);
+    setMoved(mover, move, score);
+    return score;
+  }
+
+  /**
+   * Plays the specified legal move of the game like {@link #make(int)}, but
+   * the move is not kept for unmaking, so any number of moves can be played.
+   * @param move encoded by {@link MCMove}
+   * @return score of the move
+   * @throws IllegalStateException if there are made moves to be unmade
+   */
+  public int play(int move) {
+    if (depth != 0) {
+      throw new IllegalStateException("moves can not be played over " + depth + " made moves");
+    }
+    int mover = MCBitboard.half(MCMove.from(move));
+    int score = score(move);
+    apply(move);
+    setMoved(mover, move, score);
+    return score;
+  }
+
+  private void setMoved(int mover, int move, int score) {
+    scores[mover] += score;
+    prevMove = move;
+    prevScore = score;
+    color = 1 - mover;
+  }
+
+  /**
+   * Unmakes the last made move, and restores the state before it.
+   */
+  public void unmake() {
+    int entry = stack[--depth];
+    int move = (entry & 0x7FF) - 1;
+    scores[MCBitboard.half(MCMove.from(move))] -= prevScore;
+    prevMove = ((entry >>> 11) & 0x7FF) - 1;
+    prevScore = (entry >>> 22) & 3;
+    color = (entry >>> 26) & 1;
+    undo(move, (entry >>> 24) & 3);
+  }
+
+  /**
+   * @return color of the player to move
+   */
+  public int getColor() {
+    return color;
+  }
+
+  /**
+   * @return previous move or {@link MCMove#NONE}
+   */
+  public int getPrevMove() {
+    return prevMove;
+  }
+
+  /**
+   * @return score of the previous move
+   */
+  public int getPrevScore() {
+    return prevScore;
+  }
+
+  /**
+   * Returns the score of the specified player without the point, that is
+   * given by {@link MCGame#setAction} to the player finishing a drawn game.
+   * @param color color of the player
+   * @return score of the player
+   */
+  public int getScore(int color) {
+    return scores[color];
+  }
+
+  /**
+   * Returns whether the game is finished by the last made move, that is the
+   * half of the mover is empty.
+   * @return true if the game is finished
+   */
+  public boolean isFinished() {
+    return prevMove != MCMove.NONE && numFigures[MCBitboard.half(MCMove.from(prevMove))] == 0;
+  }
+
+  /**
+   * @return the number of the made and not unmade moves
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  @Override
+  public String toString() {
+    return MCBitboard.toString(board);
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import game.engine.log.GameLogReader;
+
+/**
+ * Random-access index of a binary {@link MCGame} gameplay log. The index keeps
+ * a keyframe every {@link #getInterval()} moves: the file offset of the next
+ * record of the log and the position before it, that is the packed board, the
+ * player to move, the previous move, its score and the scores of the players.
+ * The number of figures is counted from the board. Seeking to a move restores
+ * the nearest previous keyframe and applies at most the interval of moves.
+ * <p>
+ * The index is stored next to the log with the {@link #EXTENSION} extension,
+ * together with the length of the log, so a changed log is indexed again.
+ * Scores are the scores of {@link MCPosition}, without the point of a drawn
+ * game and without the time-out. Serialized logs have to be converted by
+ * {@link game.engine.log.GameLogConverter} first.
+ */
+public final class MCReplayIndex {
+
+  /** default number of moves between keyframes */
+  public static final int DEFAULT_INTERVAL = 32;
+  /** file extension of the index, appended to the name of the log */
+  public static final String EXTENSION = ".idx";
+  /** first bytes of an index: "GIDX" */
+  private static final int MAGIC = 0x47494458;
+  private static final int VERSION = 1;
+
+  private final File log;
+  private final int interval;
+  private final int moves;
+  private final long[] offsets;
+  private final long[] boards;
+  /** color, previous move + 1 and previous score packed */
+  private final int[] states;
+  private final int[] scores0;
+  private final int[] scores1;
+
+  private MCReplayIndex(File log, int interval, int moves, long[] offsets, long[] boards, int[] states, int[] scores0, int[] scores1) {
+    this.log = log;
+    this.interval = interval;
+    this.moves = moves;
+    this.offsets = offsets;
+    this.boards = boards;
+    this.states = states;
+    this.scores0 = scores0;
+    this.scores1 = scores1;
+  }
+
+  /**
+   * Returns the index file of the specified log.
+   * @param log gameplay log
+   * @return index file next to the log
+   */
+  public static File indexFile(File log) {
+    return new File(log.getPath() + EXTENSION);
+  }
+
+  /**
+   * Loads the index of the specified log, or builds and stores it with the
+   * default interval, if it does not exist or it belongs to another version of
+   * the log.
+   * @param log binary gameplay log of {@link MCGame}
+   * @return the index
+   * @throws IOException if the log or the index can not be read or written
+   */
+  public static MCReplayIndex open(File log) throws IOException {
+    File file = indexFile(log);
+    if (file.exists()) {
+      MCReplayIndex index = load(log, file);
+      if (index != null) {
+        return index;
+      }
+    }
+    MCReplayIndex index = build(log, DEFAULT_INTERVAL);
+    index.save(file);
+    return index;
+  }
+
+  /**
+   * Builds the index of the specified log by reading it through.
+   * @param log binary gameplay log of {@link MCGame}
+   * @param interval number of moves between keyframes
+   * @return the index
+   * @throws IOException if the log can not be read
+   */
+  public static MCReplayIndex build(File log, int interval) throws IOException {
+    if (interval < 1) {
+      throw new IllegalArgumentException("invalid keyframe interval: " + interval);
+    }
+    GameLogReader reader = new GameLogReader(log);
+    try {
+      if (!MCGame.class.getName().equals(reader.getGameClass())) {
+        throw new IOException("not a log of " + MCGame.class.getName() + ": " + log);
+      }
+      MCPosition position = new MCPosition(MCGame.newBoard());
+      int[] buffer = new int[MCMoveGenerator.MAX_MOVES];
+      int capacity = 16;
+      long[] offsets = new long[capacity];
+      long[] boards = new long[capacity];
+      int[] states = new int[capacity];
+      int[] scores0 = new int[capacity];
+      int[] scores1 = new int[capacity];
+      int count = 0;
+      int moves = 0;
+      while (true) {
+        if (moves % interval == 0) {
+          if (count == capacity) {
+            capacity <<= 1;
+            offsets = Arrays.copyOf(offsets, capacity);
+            boards = Arrays.copyOf(boards, capacity);
+            states = Arrays.copyOf(states, capacity);
+            scores0 = Arrays.copyOf(scores0, capacity);
+            scores1 = Arrays.copyOf(scores1, capacity);
+          }
+          offsets[count] = reader.getPosition();
+          boards[count] = position.getBoard();
+          states[count] = position.getColor() | ((position.getPrevMove() + 1) << 1) | (position.getPrevScore() << 12);
+          scores0[count] = position.getScore(0);
+          scores1[count] = position.getScore(1);
+          count++;
+        }
+        if (!reader.next()) {
+          break;
+        }
+        MCGameRecord.play(position, reader.getCode(), buffer);
+        moves++;
+      }
+      return new MCReplayIndex(log, interval, moves, Arrays.copyOf(offsets, count), Arrays.copyOf(boards, count),
+          Arrays.copyOf(states, count), Arrays.copyOf(scores0, count), Arrays.copyOf(scores1, count));
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Stores the index into the specified file.
+   * @param file index file
+   * @throws IOException if the file can not be written
+   */
+  public void save(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(log.length());
+      out.writeInt(interval);
+      out.writeInt(moves);
+      out.writeInt(offsets.length);
+      for (int i = 0; i < offsets.length; i++) {
+        out.writeLong(offsets[i]);
+        out.writeLong(boards[i]);
+        out.writeInt(states[i]);
+        out.writeInt(scores0[i]);
+        out.writeInt(scores1[i]);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Loads the index of the specified log from the specified file.
+   * @return the index or null if the file is not an index of the log
+   */
+  private static MCReplayIndex load(File log, File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || in.readByte() != VERSION || in.readLong() != log.length()) {
+        return null;
+      }
+      int interval = in.readInt();
+      int moves = in.readInt();
+      int count = in.readInt();
+      long[] offsets = new long[count];
+      long[] boards = new long[count];
+      int[] states = new int[count];
+      int[] scores0 = new int[count];
+      int[] scores1 = new int[count];
+      for (int i = 0; i < count; i++) {
+        offsets[i] = in.readLong();
+        boards[i] = in.readLong();
+        states[i] = in.readInt();
+        scores0[i] = in.readInt();
+        scores1[i] = in.readInt();
+      }
+      return new MCReplayIndex(log, interval, moves, offsets, boards, states, scores0, scores1);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns the position after the specified number of moves.
+   * @param move number of moves, between 0 and {@link #getMoves()}
+   * @return the position
+   * @throws IOException if the log can not be read
+   */
+  public MCPosition seek(int move) throws IOException {
+    if (move < 0 || moves < move) {
+      throw new IllegalArgumentException("invalid move: " + move + ", the log has " + moves + " moves");
+    }
+    int k = move / interval;
+    MCPosition position = new MCPosition(boards[k]);
+    int state = states[k];
+    position.setState(state & 1, ((state >>> 1) & 0x7FF) - 1, state >>> 12, scores0[k], scores1[k]);
+    int[] buffer = new int[MCMoveGenerator.MAX_MOVES];
+    GameLogReader reader = new GameLogReader(log);
+    try {
+      reader.seek(offsets[k]);
+      for (int i = k * interval; i < move; i++) {
+        reader.next();
+        MCGameRecord.play(position, reader.getCode(), buffer);
+      }
+    } finally {
+      reader.close();
+    }
+    return position;
+  }
+
+  /**
+   * @return the number of moves of the log
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * @return the number of moves between keyframes
+   */
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * @return the number of keyframes
+   */
+  public int getKeyframes() {
+    return offsets.length;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("required parameters for the index are:");
+      System.err.println("\t- binary log file");
+      System.err.println("optional parameters:");
+      System.err.println("\t- moves to seek");
+      System.exit(1);
+    }
+    File log = new File(args[0]);
+    long start = System.nanoTime();
+    MCReplayIndex index = open(log);
+    System.out.println("index: " + indexFile(log) + " moves: " + index.getMoves() + " keyframes: " + index.getKeyframes() + " (" + (System.nanoTime() - start) / 1000 + " us)");
+    for (int i = 1; i < args.length; i++) {
+      start = System.nanoTime();
+      MCPosition position = index.seek(Integer.parseInt(args[i]));
+      long elapsed = (System.nanoTime() - start) / 1000;
+      System.out.println("MOVE: " + args[i] + " TO MOVE: " + position.getColor() + " SCORES: " + position.getScore(0) + " " + position.getScore(1) + " (" + elapsed + " us)");
+      System.out.println(position);
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,752 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Endgame tablebase of the {@link MCGame} game: the solved positions with at
+ * most a few figures on the board, generated by retrograde analysis.
+ * <p>
+ * The value of a position for the player to move is twice the difference of
+ * the scores, that the players get from the position with perfect play, plus
+ * one if the player to move empties its half at the end or minus one if the
+ * opponent does. So the result of the game with the current score difference
+ * d is the sign of 2 * d + value, including the point of the player finishing
+ * a drawn game (see {@link #result(int, int)}). A value is odd, if the game
+ * can be finished by force. It is even, if none of the players can force the
+ * end after the captures worth the half of the value, so the game would be
+ * decided by the scores. {@link #WIN} and {@link #LOSS} are the positions,
+ * where a player runs out of legal moves and loses by time-out. The distance
+ * of a position is the number of plies of the perfect play until a figure is
+ * captured or merged or the game ends, the winning side shortens and the
+ * losing side lengthens it.
+ * <p>
+ * The positions are stored with player 0 to move, the positions of player 1
+ * are rotated by 180 degrees. The previous move can only restrict the player
+ * to move if its reversal is the best move, that is better than the other
+ * moves by the value and then by the distance. So an entry holds the value and
+ * the distance of the position, its best move if it is unique, and the value
+ * and the distance without the best move. The entries of the positions
+ * with the same number of figures form a layer, indexed by the combination of
+ * the occupied squares and the values of the figures. The file is
+ * memory-mapped, and it is shared by the players of a process by
+ * {@link #open(File)}.
+ * <p>
+ * The file starts with the magic bytes, the version and the maximal number of
+ * figures, then the layers follow from 1 figure. An entry is the value, the
+ * value without the best move (1 byte each), the best move or
+ * {@link MCMove#NONE} (2 bytes), the distance and the distance without the
+ * best move (1 byte each), in big-endian byte order.
+ */
+public final class MCTablebase {
+
+  /** system property of the tablebase file, that is used by the players */
+  public static final String PROPERTY = "game.mc.tablebase";
+  /** maximal number of figures, the layers of 6 figures would not fit in a file mapping */
+  public static final int MAX_PIECES = 5;
+  /** default number of figures of the generator */
+  public static final int DEFAULT_PIECES = 4;
+  /** value of a position, where the opponent can be forced out of legal moves */
+  public static final int WIN = 127;
+  /** value of a position, where the player can be forced out of legal moves */
+  public static final int LOSS = -127;
+  /** value of a position, that is not in the tablebase */
+  public static final int UNKNOWN = Integer.MIN_VALUE;
+  /** distance of the positions, that are not solved within 254 plies */
+  private static final int NO_DISTANCE = 255;
+  /** first bytes of a tablebase: "GTBL" */
+  private static final int MAGIC = 0x4754424C;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 4 + 4;
+  private static final int ENTRY_SIZE = 6;
+  /** squares of player 0 */
+  private static final int HALF = 0x0000FFFF;
+
+  /** binomial coefficients of the squares and the figures */
+  private static final int[][] BINOMIAL = new int[MCBitboard.CELLS + 1][MAX_PIECES + 1];
+  /** number of the value combinations of the figures */
+  private static final int[] POWERS = new int[MAX_PIECES + 1];
+
+  static {
+    for (int n = 0; n <= MCBitboard.CELLS; n++) {
+      BINOMIAL[n][0] = 1;
+      for (int k = 1; k <= Math.min(n, MAX_PIECES); k++) {
+        BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+      }
+    }
+    POWERS[0] = 1;
+    for (int k = 1; k <= MAX_PIECES; k++) {
+      POWERS[k] = 3 * POWERS[k - 1];
+    }
+  }
+
+  private static final Map<String, MCTablebase> tablebases = new ConcurrentHashMap<String, MCTablebase>();
+
+  private final ByteBuffer entries;
+  private final int pieces;
+  /** position of the first entry of the layers */
+  private final int[] offsets;
+
+  private MCTablebase(File file) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("not a tablebase: " + file);
+      }
+      pieces = buffer.getInt(8);
+      if (pieces < 1 || MAX_PIECES < pieces) {
+        throw new IOException("invalid number of figures: " + pieces);
+      }
+      offsets = offsets(pieces);
+      if (buffer.limit() < HEADER_SIZE + offsets[pieces + 1]) {
+        throw new IOException("truncated tablebase: " + file);
+      }
+      buffer.position(HEADER_SIZE);
+      entries = buffer.slice();
+    } finally {
+      // the mapping remains valid
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the tablebase of the specified file, that is mapped once per
+   * process.
+   * @param file tablebase file
+   * @return the tablebase
+   * @throws IOException if the file can not be read
+   */
+  public static MCTablebase open(File file) throws IOException {
+    String path = file.getCanonicalPath();
+    MCTablebase tablebase = tablebases.get(path);
+    if (tablebase == null) {
+      synchronized (tablebases) {
+        tablebase = tablebases.get(path);
+        if (tablebase == null) {
+          tablebase = new MCTablebase(file);
+          tablebases.put(path, tablebase);
+        }
+      }
+    }
+    return tablebase;
+  }
+
+  /**
+   * Returns the tablebase of the file set by the {@link #PROPERTY} system
+   * property.
+   * @return the tablebase or null if the property is not set or the file can
+   * not be read
+   */
+  public static MCTablebase getDefault() {
+    String name = System.getProperty(PROPERTY);
+    if (name == null) {
+      return null;
+    }
+    try {
+      return open(new File(name));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the maximal number of figures of the positions
+   */
+  public int getPieces() {
+    return pieces;
+  }
+
+  /**
+   * Checks whether the positions of the specified board are solved.
+   * @param board packed board
+   * @return true if the number of figures is at most {@link #getPieces()}
+   */
+  public boolean contains(long board) {
+    return Integer.bitCount(MCBitboard.occupied(board)) <= pieces;
+  }
+
+  /**
+   * Returns the value of the specified position for the player to move.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return value or {@link #UNKNOWN} if the position is not in the tablebase
+   */
+  public int probe(long board, int color, int prevMove, int prevScore) {
+    int entry = locate(board, color);
+    if (entry < 0) {
+      return UNKNOWN;
+    }
+    return entries.get(entry + (isRestricted(entry, color, prevMove, prevScore) ? 1 : 0));
+  }
+
+  /**
+   * Returns the distance of the specified position.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return the number of plies until a capture, a merge or the end of the
+   * game, 0 for the positions with value 0, or -1 if it is unknown
+   */
+  public int getDistance(long board, int color, int prevMove, int prevScore) {
+    int entry = locate(board, color);
+    if (entry < 0) {
+      return -1;
+    }
+    int distance = entries.get(entry + (isRestricted(entry, color, prevMove, prevScore) ? 5 : 4)) & 0xFF;
+    return distance == NO_DISTANCE ? -1 : distance;
+  }
+
+  /**
+   * Chooses the legal move of the specified position with the best value,
+   * and from the moves of the same value the one that realizes a positive
+   * value sooner or a negative value later.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return best move or {@link MCMove#NONE} if the position is not in the
+   * tablebase or there is no legal move
+   */
+  public int choose(long board, int color, int prevMove, int prevScore) {
+    if (!contains(board)) {
+      return MCMove.NONE;
+    }
+    int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    int count = MCMoveGenerator.generate(board, prevMove, prevScore, color, moves);
+    int best = MCMove.NONE;
+    int bestValue = UNKNOWN;
+    int bestDistance = 0;
+    for (int i = 0; i < count; i++) {
+      int move = moves[i];
+      int target = MCBitboard.get(board, MCMove.to(move));
+      int score = MCBitboard.half(MCMove.to(move)) == color ? 0 : target;
+      long child = apply(board, move);
+      int value;
+      int distance = 1;
+      if (MCBitboard.count(child, color) == 0) {
+        value = 2 * score + 1;
+      } else {
+        value = negate(probe(child, 1 - color, move, score), score);
+        if (target == MCGame.empty) {
+          int rest = getDistance(child, 1 - color, move, score);
+          distance = rest < 0 ? NO_DISTANCE : 1 + rest;
+        }
+      }
+      if (bestValue < value || (bestValue == value && (0 < value ? distance < bestDistance : bestDistance < distance))) {
+        best = move;
+        bestValue = value;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the result of the game for the player to move.
+   * @param value value of the position
+   * @param diff score of the player to move minus the score of the opponent
+   * @return 1 for a win, 0 for a draw and -1 for a loss with perfect play
+   */
+  public static int result(int value, int diff) {
+    return value == WIN ? 1 : value == LOSS ? -1 : Integer.signum(2 * diff + value);
+  }
+
+  /**
+   * Returns the value of a move from the value of the position after it.
+   * @param value value of the next position for the opponent
+   * @param score score of the move
+   * @return value of the move for the mover
+   */
+  static int negate(int value, int score) {
+    return value == LOSS ? WIN : value == WIN ? LOSS : 2 * score - value;
+  }
+
+  /**
+   * Returns the position of the entry of the specified board, or -1.
+   */
+  private int locate(long board, int color) {
+    if (color != 0) {
+      board = rotate(board);
+    }
+    int count = Integer.bitCount(MCBitboard.occupied(board));
+    if (count == 0 || pieces < count) {
+      return -1;
+    }
+    return offsets[count] + index(board, count) * ENTRY_SIZE;
+  }
+
+  /**
+   * Checks whether the best move of the entry is the reversal of the
+   * previous move, that can not be played.
+   */
+  private boolean isRestricted(int entry, int color, int prevMove, int prevScore) {
+    if (prevMove == MCMove.NONE || prevScore != 0) {
+      return false;
+    }
+    int reversed = MCMove.reverse(prevMove);
+    return entries.getShort(entry + 2) == (color == 0 ? reversed : rotate(reversed));
+  }
+
+  /**
+   * Returns the board after the specified legal move.
+   */
+  static long apply(long board, int move) {
+    int from = MCMove.from(move);
+    int to = MCMove.to(move);
+    int value = MCBitboard.get(board, from);
+    int target = MCBitboard.get(board, to);
+    long child = MCBitboard.set(board, from, MCGame.empty);
+    return MCBitboard.set(child, to, MCBitboard.half(from) == MCBitboard.half(to) ? value + target : value);
+  }
+
+  /**
+   * Returns the board rotated by 180 degrees, that swaps the halves.
+   */
+  static long rotate(long board) {
+    long bits = Long.reverse(board);
+    // the bits of a cell are swapped by the reversal
+    return ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+  }
+
+  /**
+   * Returns the move rotated by 180 degrees.
+   */
+  static int rotate(int move) {
+    return MCMove.encode(MCBitboard.CELLS - 1 - MCMove.from(move), MCBitboard.CELLS - 1 - MCMove.to(move));
+  }
+
+  /**
+   * Returns the index of the specified board in its layer.
+   * @param board packed board
+   * @param count the number of figures of the board
+   * @return index of the occupied squares and the figure values
+   */
+  static int index(long board, int count) {
+    int squares = 0;
+    int values = 0;
+    int i = 0;
+    for (int cells = MCBitboard.occupied(board); cells != 0; cells &= cells - 1, i++) {
+      int square = Integer.numberOfTrailingZeros(cells);
+      squares += BINOMIAL[square][i + 1];
+      values += (MCBitboard.get(board, square) - 1) * POWERS[i];
+    }
+    return squares * POWERS[count] + values;
+  }
+
+  /**
+   * Returns the board of the specified index in its layer.
+   * @param index index of the board
+   * @param count the number of figures of the board
+   * @return packed board
+   */
+  static long board(int index, int count) {
+    int squares = index / POWERS[count];
+    int values = index % POWERS[count];
+    int[] cells = new int[count];
+    for (int i = count - 1; 0 <= i; i--) {
+      int square = i;
+      while (BINOMIAL[square + 1][i + 1] <= squares) {
+        square++;
+      }
+      squares -= BINOMIAL[square][i + 1];
+      cells[i] = square;
+    }
+    long board = 0;
+    for (int i = 0; i < count; i++) {
+      board = MCBitboard.set(board, cells[i], 1 + values % 3);
+      values /= 3;
+    }
+    return board;
+  }
+
+  /**
+   * @return the number of the positions with the specified number of figures
+   */
+  static int size(int count) {
+    return BINOMIAL[MCBitboard.CELLS][count] * POWERS[count];
+  }
+
+  /**
+   * Returns the position of the first entry of the layers from 1 to the
+   * specified number of figures, and the size of the entries at the end.
+   */
+  private static int[] offsets(int pieces) {
+    int[] offsets = new int[pieces + 2];
+    for (int k = 1; k <= pieces; k++) {
+      offsets[k + 1] = offsets[k] + size(k) * ENTRY_SIZE;
+    }
+    return offsets;
+  }
+
+  /**
+   * Solves the positions layer by layer from 1 figure. A capture or a merge
+   * leads to a solved layer, the other moves score 0 and stay in the layer.
+   * The values of a layer are the values of the game truncated after more and
+   * more plies with the value 0 at the end, until they are stable. The
+   * distances of the layer are computed the same way from the final values.
+   * Generating 5 figures needs about 1 GB heap.
+   */
+  public static final class Generator {
+    private final int pieces;
+    /** entries of the layers: value, value without the best move, and the best move */
+    private final int[][] values;
+    /** entries of the distances: distance, distance without the best move, and the best move */
+    private final int[][] distances;
+    private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    private final int[] moveValues = new int[MCMoveGenerator.MAX_MOVES];
+    private final int[] steps = new int[MCMoveGenerator.MAX_MOVES];
+    /** distance of the last evaluated move */
+    private int step;
+
+    /**
+     * @param pieces maximal number of figures, at most {@link #MAX_PIECES}
+     */
+    public Generator(int pieces) {
+      if (pieces < 1 || MAX_PIECES < pieces) {
+        throw new IllegalArgumentException("invalid number of figures: " + pieces);
+      }
+      this.pieces = pieces;
+      values = new int[pieces + 1][];
+      distances = new int[pieces + 1][];
+    }
+
+    /**
+     * Solves the layers.
+     * @param log progress of the layers is printed to, can be null
+     */
+    public void generate(PrintStream log) {
+      for (int k = 1; k <= pieces; k++) {
+        long start = System.nanoTime();
+        int sweeps = solve(k, false);
+        int distanceSweeps = solve(k, true);
+        if (log != null) {
+          int[] results = new int[3];
+          for (int i = 0; i < values[k].length; i++) {
+            if (isValid(board(i, k))) {
+              results[1 + result(value(values[k][i]), 0)]++;
+            }
+          }
+          log.println(String.format(Locale.US, "%d figures: %d positions, %d won, %d drawn, %d lost, %d + %d sweeps (%d ms)",
+              k, values[k].length, results[2], results[1], results[0], sweeps, distanceSweeps, (System.nanoTime() - start) / 1000000));
+        }
+      }
+    }
+
+    /**
+     * Computes the values or the distances of a layer by sweeps. A sweep
+     * evaluates the positions, that have a changed successor in the layer, so
+     * the predecessors of the changed positions are marked for the next sweep.
+     * @return the number of the sweeps
+     */
+    private int solve(int k, boolean distance) {
+      int size = size(k);
+      int[] current = new int[size];
+      int[] next = new int[size];
+      Arrays.fill(current, distance ? entry(NO_DISTANCE, NO_DISTANCE, MCMove.NONE) : entry(0, 0, MCMove.NONE));
+      long[] marked = new long[(size + 63) >>> 6];
+      long[] nextMarked = new long[marked.length];
+      Arrays.fill(marked, -1L);
+      int sweeps = 0;
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        if (distance) {
+          distances[k] = current;
+        } else {
+          values[k] = current;
+        }
+        System.arraycopy(current, 0, next, 0, size);
+        for (int w = 0; w < marked.length; w++) {
+          for (long bits = marked[w]; bits != 0; bits &= bits - 1) {
+            int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+            if (size <= i) {
+              break;
+            }
+            long board = board(i, k);
+            if (!isValid(board)) {
+              next[i] = entry(0, 0, MCMove.NONE);
+            } else {
+              next[i] = distance ? measure(board, k, values[k][i]) : evaluate(board, k);
+              if (next[i] != current[i]) {
+                changed = true;
+                mark(board, k, nextMarked);
+              }
+            }
+          }
+        }
+        int[] swap = current;
+        current = next;
+        next = swap;
+        long[] swapMarked = marked;
+        marked = nextMarked;
+        nextMarked = swapMarked;
+        Arrays.fill(nextMarked, 0L);
+        sweeps++;
+      }
+      if (distance) {
+        distances[k] = current;
+      } else {
+        values[k] = current;
+      }
+      return sweeps;
+    }
+
+    /**
+     * Marks the positions of the layer, that lead to the specified position by
+     * a move without capture and merge.
+     */
+    private static void mark(long board, int k, long[] marked) {
+      // the position after the move of player 0
+      long child = rotate(board);
+      int occupied = MCBitboard.occupied(child);
+      for (int cells = occupied; cells != 0; cells &= cells - 1) {
+        int to = Integer.numberOfTrailingZeros(cells);
+        int value = MCBitboard.get(child, to);
+        if (MCBitboard.half(to) != 0 && (occupied & ~HALF) == 1 << to) {
+          // the half of player 1 would be empty before the move
+          continue;
+        }
+        int reach = value == 1 ? MCMoveGenerator.PAWN_REACH[to] : value == 2 ? MCMoveGenerator.DRONE_REACH[to] : MCMoveGenerator.QUEEN_REACH[to];
+        for (int froms = reach & HALF & ~occupied; froms != 0; froms &= froms - 1) {
+          int from = Integer.numberOfTrailingZeros(froms);
+          if ((MCMoveGenerator.BETWEEN[MCMove.encode(from, to)] & occupied) == 0) {
+            int index = index(MCBitboard.set(MCBitboard.set(child, to, MCGame.empty), from, value), k);
+            marked[index >>> 6] |= 1L << index;
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the entry of the specified position from the values of the
+     * previous sweep.
+     */
+    private int evaluate(long board, int k) {
+      int count = MCMoveGenerator.generate(board, MCMove.NONE, 0, 0, moves);
+      int first = UNKNOWN;
+      int second = UNKNOWN;
+      int best = MCMove.NONE;
+      for (int i = 0; i < count; i++) {
+        int value = evaluate(board, k, moves[i], false);
+        if (first < value) {
+          second = first;
+          first = value;
+          best = moves[i];
+        } else if (first == value) {
+          second = value;
+          best = MCMove.NONE;
+        } else if (second < value) {
+          second = value;
+        }
+      }
+      if (count == 0) {
+        return entry(LOSS, LOSS, MCMove.NONE);
+      }
+      return entry(first, second == UNKNOWN ? LOSS : second, best);
+    }
+
+    /**
+     * Returns the value of the specified move of player 0, and sets the
+     * distance of the move if it is requested.
+     */
+    private int evaluate(long board, int k, int move, boolean distance) {
+      int target = MCBitboard.get(board, MCMove.to(move));
+      boolean cross = MCBitboard.half(MCMove.to(move)) != 0;
+      int score = cross ? target : 0;
+      long child = apply(board, move);
+      step = 1;
+      if ((MCBitboard.occupied(child) & HALF) == 0) {
+        return 2 * score + 1;
+      }
+      int count = target == MCGame.empty ? k : k - 1;
+      int index = index(rotate(child), count);
+      int entry = values[count][index];
+      // the reversal of a move into the other half is not allowed
+      int reversed = cross && target == MCGame.empty ? rotate(MCMove.reverse(move)) : MCMove.NONE;
+      if (distance && count == k) {
+        int rest = distances[k][index];
+        rest = (best(rest) == reversed ? rest >>> 8 : rest) & 0xFF;
+        step = rest == NO_DISTANCE ? NO_DISTANCE : Math.min(1 + rest, NO_DISTANCE - 1);
+      }
+      return negate(best(entry) == reversed ? restricted(entry) : value(entry), score);
+    }
+
+    /**
+     * Returns the distances of the specified position from the distances of
+     * the previous sweep: the distance, the distance without the best move
+     * and the best move, that is better than the other moves by the value and
+     * then by the distance, if it is unique.
+     */
+    private int measure(long board, int k, int entry) {
+      int value = value(entry);
+      int count = MCMoveGenerator.generate(board, MCMove.NONE, 0, 0, moves);
+      int optimal = 0;
+      for (int i = 0; i < count; i++) {
+        moveValues[i] = evaluate(board, k, moves[i], true);
+        steps[i] = step;
+        optimal += moveValues[i] == value ? 1 : 0;
+      }
+      int distance = extreme(value, count, MCMove.NONE);
+      int best = MCMove.NONE;
+      int ties = 0;
+      for (int i = 0; i < count; i++) {
+        if (moveValues[i] == value && steps[i] == distance) {
+          best = moves[i];
+          ties++;
+        }
+      }
+      if (optimal == 1) {
+        best = best(entry);
+      } else if (value == 0 || 1 < ties) {
+        // the best move has to be unique
+        best = MCMove.NONE;
+      }
+      int restricted = best == MCMove.NONE ? distance : extreme(best == best(entry) ? restricted(entry) : value, count, best);
+      return entry(distance, restricted, best);
+    }
+
+    /**
+     * Returns the shortest distance of the moves of a positive value, and the
+     * longest one of a negative value, without the specified move.
+     */
+    private int extreme(int value, int count, int excluded) {
+      if (value == 0) {
+        return 0;
+      }
+      int distance = 0 < value ? NO_DISTANCE : 0;
+      for (int i = 0; i < count; i++) {
+        if (moveValues[i] != value || moves[i] == excluded) {
+          continue;
+        }
+        if (0 < value) {
+          distance = Math.min(distance, steps[i]);
+        } else {
+          // the losing side may escape from the unsolved positions
+          distance = distance == NO_DISTANCE || steps[i] == NO_DISTANCE ? NO_DISTANCE : Math.max(distance, steps[i]);
+        }
+      }
+      return distance;
+    }
+
+    /**
+     * Writes the solved layers.
+     * @param file tablebase file
+     * @throws IOException if the file can not be written
+     */
+    public void write(File file) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      try {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(pieces);
+        for (int k = 1; k <= pieces; k++) {
+          for (int i = 0; i < values[k].length; i++) {
+            if (buffer.remaining() < ENTRY_SIZE) {
+              write(channel, buffer);
+            }
+            int entry = values[k][i];
+            int distance = distances[k][i];
+            // the value without the best move is the value, if the best move is chosen by the distance
+            buffer.put((byte)value(entry));
+            buffer.put((byte)(best(distance) == best(entry) ? restricted(entry) : value(entry)));
+            buffer.putShort((short)best(distance));
+            buffer.put((byte)distance);
+            buffer.put((byte)(distance >>> 8));
+          }
+        }
+        write(channel, buffer);
+      } finally {
+        channel.close();
+      }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    /**
+     * Both players have figures, otherwise the game is finished.
+     */
+    private static boolean isValid(long board) {
+      int occupied = MCBitboard.occupied(board);
+      return (occupied & HALF) != 0 && (occupied & ~HALF) != 0;
+    }
+
+    private static int entry(int value, int restricted, int best) {
+      return (value & 0xFF) | (restricted & 0xFF) << 8 | best << 16;
+    }
+
+    private static int value(int entry) {
+      return (byte)entry;
+    }
+
+    private static int restricted(int entry) {
+      return (byte)(entry >> 8);
+    }
+
+    private static int best(int entry) {
+      return entry >> 16;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int pieces = DEFAULT_PIECES;
+    int k = 0;
+    for (; k + 1 < args.length && args[k].startsWith("-"); k++) {
+      if (args[k].equals("-pieces")) {
+        pieces = Integer.parseInt(args[++k]);
+      } else {
+        System.err.println("unknown option: " + args[k]);
+        System.exit(1);
+      }
+    }
+    if (args.length < k + 1) {
+      System.err.println("optional parameters for the tablebase generator are:");
+      System.err.println("\t-pieces <maximal number of figures, at most " + MAX_PIECES + ">");
+      System.err.println("required parameters for the tablebase generator are:");
+      System.err.println("\t- tablebase file");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    Generator generator = new Generator(pieces);
+    generator.generate(System.out);
+    File file = new File(args[k]);
+    generator.write(file);
+    System.out.println(file + ": " + file.length() + " bytes (" + (System.nanoTime() - start) / 1000000 + " ms)");
+    System.exit(0);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+/**
+ * Fixed-size transposition table of search results keyed by {@link MCZobrist}
+ * hashes. The entries are stored in two primitive arrays, in buckets of two
+ * entries: the first entry of a bucket is replaced by deeper results or by
+ * results of a newer search only, the second one is always replaced.
+ * <p>
+ * An entry is packed into a long: the move + 1 (11 bits), the value + 32768
+ * (16 bits), the depth (8 bits), the bound (2 bits) and the search generation
+ * (8 bits). The accessors of the packed entry are static.
+ * <p>
+ * The table can be shared by the threads of a parallel search without locks:
+ * the key of an entry is stored xor-ed with the entry, so an entry, that is
+ * torn by concurrent writes, does not match its key and it is not returned.
+ */
+public final class MCTranspositionTable {
+
+  /** the value is exact */
+  public static final int EXACT = 1;
+  /** the value is a lower bound (fail high) */
+  public static final int LOWER = 2;
+  /** the value is an upper bound (fail low) */
+  public static final int UPPER = 3;
+
+  private final long[] keys;
+  private final long[] entries;
+  private final int mask;
+  private int generation;
+
+  /**
+   * Creates a table that uses at most the specified number of bytes.
+   * @param bytes memory limit, at least 32 bytes
+   */
+  public MCTranspositionTable(long bytes) {
+    int buckets = Integer.highestOneBit((int)Math.min(bytes / 32, 1 << 26));
+    keys = new long[buckets << 1];
+    entries = new long[buckets << 1];
+    mask = buckets - 1;
+  }
+
+  /**
+   * Starts a new search, entries of the previous searches can be replaced.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & 0xFF;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 0;
+      entries[i] = 0;
+    }
+    generation = 0;
+  }
+
+  /**
+   * Returns the entry of the specified position.
+   * @param key hash of the position
+   * @return packed entry or 0 if the position is not in the table
+   */
+  public long probe(long key) {
+    int i = ((int)key & mask) << 1;
+    long entry = entries[i];
+    if ((keys[i] ^ entry) == key && entry != 0) {
+      return entry;
+    }
+    entry = entries[i + 1];
+    if ((keys[i + 1] ^ entry) == key && entry != 0) {
+      return entry;
+    }
+    return 0;
+  }
+
+  /**
+   * Stores the search result of the specified position.
+   * @param key hash of the position
+   * @param move best move or {@link MCMove#NONE}
+   * @param value value of the position, between -32768 and 32767
+   * @param depth remaining search depth, between 0 and 255
+   * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+   */
+  public void store(long key, int move, int value, int depth, int bound) {
+    int i = ((int)key & mask) << 1;
+    long entry = pack(move, value, depth, bound, generation);
+    long first = entries[i];
+    long firstKey = keys[i] ^ first;
+    if (firstKey == key) {
+      // keep the best move of the same position
+      if (move == MCMove.NONE) {
+        entry = pack(move(first), value, depth, bound, generation);
+      }
+      if (depth(first) <= depth || generation(first) != generation || bound == EXACT) {
+        keys[i] = key ^ entry;
+        entries[i] = entry;
+        return;
+      }
+    } else if (first == 0 || depth(first) <= depth || generation(first) != generation) {
+      // depth-preferred entry
+      if (first != 0) {
+        keys[i + 1] = firstKey ^ first;
+        entries[i + 1] = first;
+      }
+      keys[i] = key ^ entry;
+      entries[i] = entry;
+      return;
+    }
+    // always replaced entry
+    keys[i + 1] = key ^ entry;
+    entries[i + 1] = entry;
+  }
+
+  private static long pack(int move, int value, int depth, int bound, int generation) {
+    return (move + 1L) | ((long)(value + 32768) << 11) | ((long)depth << 27) | ((long)bound << 35) | ((long)generation << 37);
+  }
+
+  /**
+   * @param entry packed entry
+   * @return best move or {@link MCMove#NONE}
+   */
+  public static int move(long entry) {
+    return (int)(entry & 0x7FF) - 1;
+  }
+
+  /**
+   * @param entry packed entry
+   * @return value of the position
+   */
+  public static int value(long entry) {
+    return (int)((entry >>> 11) & 0xFFFF) - 32768;
+  }
+
+  /**
+   * @param entry packed entry
+   * @return search depth of the value
+   */
+  public static int depth(long entry) {
+    return (int)(entry >>> 27) & 0xFF;
+  }
+
+  /**
+   * @param entry packed entry
+   * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+   */
+  public static int bound(long entry) {
+    return (int)(entry >>> 35) & 3;
+  }
+
+  private static int generation(long entry) {
+    return (int)(entry >>> 37) & 0xFF;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing of the {@link MCGame} positions. The hash of a position is the
+ * xor of the keys of the cell contents, the key of the player to move and the
+ * key of the move that is forbidden by the no-reversal rule of
+ * {@link MCGame#score(int[][], int[][], MCAction, int, int, MCAction)}. The keys
+ * are generated from a fixed seed, so hashes are the same in every run.
+ */
+public final class MCZobrist {
+
+  /** key of the player 1 to move */
+  public static final long SIDE;
+  /** odd multiplier of the score differences */
+  private static final long SCORE;
+
+  private static final long[] CELLS = new long[MCBitboard.CELLS * 4];
+  private static final long[] REVERSALS = new long[MCMove.COUNT];
+
+  static {
+    Random r = new Random(0x4D61727469616EL);
+    for (int square = 0; square < MCBitboard.CELLS; square++) {
+      // empty cells do not change the hash
+      for (int value = 1; value < 4; value++) {
+        CELLS[(square << 2) | value] = r.nextLong();
+      }
+    }
+    for (int move = 0; move < MCMove.COUNT; move++) {
+      REVERSALS[move] = r.nextLong();
+    }
+    SIDE = r.nextLong();
+    SCORE = r.nextLong() | 1;
+  }
+
+  private MCZobrist() {
+  }
+
+  /**
+   * Returns the key of the specified cell content.
+   * @param square square index
+   * @param value value of the square
+   * @return key, that is 0 for an empty square
+   */
+  public static long cell(int square, int value) {
+    return CELLS[(square << 2) | value];
+  }
+
+  /**
+   * Returns the hash of the cell contents of the specified packed board.
+   * @param board packed board
+   * @return board hash
+   */
+  public static long hash(long board) {
+    long hash = 0;
+    for (int square = 0; square < MCBitboard.CELLS; square++) {
+      hash ^= cell(square, MCBitboard.get(board, square));
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the hash of the specified position.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return position hash
+   */
+  public static long hash(long board, int color, int prevMove, int prevScore) {
+    return hash(board) ^ state(color, prevMove, prevScore);
+  }
+
+  /**
+   * Returns the key of the player to move and of the reversal restriction.
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return key to be combined with the board hash
+   */
+  public static long state(int color, int prevMove, int prevScore) {
+    return (color == 0 ? 0 : SIDE) ^ reversal(prevMove, prevScore);
+  }
+
+  /**
+   * Returns the key of the specified score difference, for the values that
+   * depend on the scores of the players. The keys of different differences
+   * are different.
+   * @param diff score of the player to move minus the score of the opponent
+   * @return key, that is 0 for no difference
+   */
+  public static long score(int diff) {
+    return diff * SCORE;
+  }
+
+  /**
+   * Returns the key of the restriction that is set by the specified previous
+   * move. Only a move without a hit into the other half restricts the next
+   * player, other moves can not be reversed by the next player anyway.
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return key, that is 0 if there is no restriction
+   */
+  public static long reversal(int prevMove, int prevScore) {
+    if (prevMove == MCMove.NONE || prevScore != 0 ||
+        MCBitboard.half(MCMove.from(prevMove)) == MCBitboard.half(MCMove.to(prevMove))) {
+      return 0;
+    }
+    return REVERSALS[MCMove.reverse(prevMove)];
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc.players;
+
+import java.util.List;
+import java.util.Random;
+
+import game.engine.Deadline;
+import game.engine.DeadlineAware;
+import game.engine.PlayerClock;
+import game.engine.utils.Pair;
+import game.mc.MCAction;
+import game.mc.MCBitboard;
+import game.mc.MCMove;
+import game.mc.MCPlayer;
+import game.mc.MCPosition;
+import game.mc.MCTranspositionTable;
+
+/**
+ * Alpha-beta player for the Martian Chess game.
+ * Searches the game tree by negamax alpha-beta with iterative deepening and a
+ * transposition table. The time of a search is a part of the remaining
+ * game-time, and the best move of the last finished iteration is returned when
+ * the time is up. The moves of the opening book and the endgame tablebase, if
+ * they are set, are played without searching.
+ */
+public class AlphaBetaPlayer extends MCPlayer implements DeadlineAware {
+
+
+  private final MCPosition position;
+  private final MCTranspositionTable table = new MCTranspositionTable(16 << 20);
+  private final AlphaBetaSearch search = new AlphaBetaSearch(table);
+  private final int[] scores = new int[2];
+  /** moves of the opening book and the endgame tablebase, if they are set */
+  private final KnownMoves knownMoves = new KnownMoves();
+  private int prevMove = MCMove.NONE;
+  private int prevScore = 0;
+  private final PlayerClock clock = new PlayerClock();
+
+  public AlphaBetaPlayer(int color, int[][] board, Random r) {
+    super(color, board, r);
+    position = new MCPosition(board);
+  }
+
+  @Override
+  public void setDeadline(Deadline deadline) {
+    clock.setDeadline(deadline);
+  }
+
+  @Override
+  public MCAction getAction(List<Pair<Integer, MCAction>> prevActions) {
+    Deadline deadline = clock.start();
+    for (Pair<Integer, MCAction> action : prevActions) {
+      if (action.second != null) {
+        play(MCMove.encode(action.second));
+      }
+    }
+    // book and tablebase moves are played without searching
+    int move = knownMoves.choose(position.getBoard(), color, prevMove, prevScore);
+    if (move == MCMove.NONE) {
+      move = search(deadline);
+    }
+    if (move != MCMove.NONE) {
+      play(move);
+    }
+    clock.end();
+    return MCMove.toAction(move);
+  }
+
+  /**
+   * Searches the best move within the time of the specified deadline.
+   * @return best move or {@link MCMove#NONE}
+   */
+  private int search(Deadline deadline) {
+    deadline.setBudget(Deadline.RESERVE);
+    table.newSearch();
+    return search.search(position.getBoard(), color, prevMove, prevScore, scores[color] - scores[1 - color], 1, deadline);
+  }
+
+  /**
+   * Applies the specified move of the next player on the board of the player.
+   */
+  private void play(int move) {
+    int mover = MCBitboard.half(MCMove.from(move));
+    int target = position.apply(move);
+    prevScore = AlphaBetaSearch.isCross(move) ? target : 0;
+    prevMove = move;
+    scores[mover] += prevScore;
+    MCBitboard.unpack(position.getBoard(), board);
+  }
+}
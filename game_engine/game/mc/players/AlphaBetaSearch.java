@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc.players;
+
+import game.engine.Deadline;
+import game.mc.MCBitboard;
+import game.mc.MCMove;
+import game.mc.MCMoveGenerator;
+import game.mc.MCPosition;
+import game.mc.MCTablebase;
+import game.mc.MCTranspositionTable;
+import game.mc.MCZobrist;
+
+/**
+ * Iterative-deepening negamax alpha-beta search of the Martian Chess game with
+ * a transposition table, that can be shared by searches running on different
+ * threads. The value of a position is the score difference from the view of
+ * the player to move, a finished game is worth {@link #WIN} plus the final
+ * score difference. The score difference is a part of the keys of the
+ * transposition table, because the values of the finished games depend on it.
+ * The positions of the endgame tablebase, if it is set, are not searched.
+ */
+final class AlphaBetaSearch {
+
+  /** value of a won game, the final score difference is added to it */
+  static final int WIN = 1000;
+  static final int INFINITY = 30000;
+  static final int MAX_PLY = 64;
+
+  private final MCPosition position = new MCPosition(0L);
+  private final MCTranspositionTable table;
+  /** endgame tablebase set by the {@link MCTablebase#PROPERTY} property, can be null */
+  private final MCTablebase tablebase = MCTablebase.getDefault();
+  private final int[][] moves = new int[MAX_PLY + 1][MCMoveGenerator.MAX_MOVES];
+  private final int[][] keys = new int[MAX_PLY + 1][MCMoveGenerator.MAX_MOVES];
+
+  private volatile boolean aborted;
+  private boolean stopped;
+  private Deadline deadline;
+  private long nodes;
+  private int bestMove;
+  private int completedDepth;
+
+  AlphaBetaSearch(MCTranspositionTable table) {
+    this.table = table;
+  }
+
+  /**
+   * Stops the running search, can be called from any thread.
+   */
+  void abort() {
+    aborted = true;
+  }
+
+  /**
+   * Clears the abort of the previous search, it has to be called before the
+   * search is started on an other thread.
+   */
+  void reset() {
+    aborted = false;
+  }
+
+  /**
+   * Searches the best move of the specified position by iterative deepening
+   * until the game is decided, the hard limit of the deadline, the interruption
+   * of the thread or {@link #abort()}. A new iteration is not started, if it
+   * is not expected to finish before the soft limit.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @param diff score of the player to move minus the score of the opponent
+   * @param firstDepth depth of the first iteration
+   * @param deadline time limits of the search
+   * @return best move or {@link MCMove#NONE} if there is no legal move
+   */
+  int search(long board, int color, int prevMove, int prevScore, int diff, int firstDepth, Deadline deadline) {
+    position.set(board);
+    this.deadline = deadline;
+    stopped = false;
+    nodes = 0;
+    completedDepth = 0;
+    int[] rootMoves = moves[0];
+    int n = MCMoveGenerator.generate(board, prevMove, prevScore, color, rootMoves);
+    bestMove = n == 0 ? MCMove.NONE : rootMoves[0];
+    for (int depth = firstDepth; 0 < n && depth < MAX_PLY && !stopped; depth++) {
+      orderMoves(rootMoves, keys[0], n, bestMove);
+      int alpha = -INFINITY;
+      int iterationBest = MCMove.NONE;
+      for (int i = 0; i < n && !stopped; i++) {
+        int value = -child(rootMoves[i], depth, 0, -INFINITY, -alpha, color, diff);
+        if (!stopped && alpha < value) {
+          alpha = value;
+          iterationBest = rootMoves[i];
+        }
+      }
+      if (iterationBest != MCMove.NONE) {
+        // the previous best move is searched first, a better move is reliable
+        bestMove = iterationBest;
+      }
+      if (stopped) {
+        break;
+      }
+      completedDepth = depth;
+      if (WIN <= Math.abs(alpha)) {
+        // the game is decided
+        break;
+      }
+      long now = System.nanoTime();
+      if (deadline.getSoftLimit() - now < now - deadline.getStart()) {
+        // the next iteration would not be finished anyway
+        break;
+      }
+    }
+    return bestMove;
+  }
+
+  /**
+   * @return best move of the last search
+   */
+  int getBestMove() {
+    return bestMove;
+  }
+
+  /**
+   * @return depth of the last finished iteration of the last search
+   */
+  int getCompletedDepth() {
+    return completedDepth;
+  }
+
+  /**
+   * @return the number of the visited nodes of the last search
+   */
+  long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the value of the specified move for the opponent of the mover.
+   */
+  private int child(int move, int depth, int ply, int alpha, int beta, int color, int diff) {
+    int target = position.apply(move);
+    int gain = isCross(move) ? target : 0;
+    int value;
+    if (position.getNumFigures(color) == 0) {
+      value = -end(diff + gain);
+    } else if (tablebase != null && tablebase.contains(position.getBoard())) {
+      value = -solved(1 - color, move, gain, -(diff + gain));
+    } else if (depth <= 1) {
+      value = quiesce(ply + 1, alpha, beta, 1 - color, -(diff + gain));
+    } else {
+      value = negamax(depth - 1, ply + 1, alpha, beta, 1 - color, move, gain, -(diff + gain));
+    }
+    position.undo(move, target);
+    return value;
+  }
+
+  private int negamax(int depth, int ply, int alpha, int beta, int color, int prevMove, int prevScore, int diff) {
+    if (isTimeUp()) {
+      return 0;
+    }
+    // the values of the finished games depend on the score difference
+    long key = position.getHash() ^ MCZobrist.state(color, prevMove, prevScore) ^ MCZobrist.score(diff);
+    long entry = table.probe(key);
+    int ttMove = MCMove.NONE;
+    if (entry != 0) {
+      ttMove = MCTranspositionTable.move(entry);
+      if (depth <= MCTranspositionTable.depth(entry)) {
+        int value = MCTranspositionTable.value(entry);
+        int bound = MCTranspositionTable.bound(entry);
+        if (bound == MCTranspositionTable.EXACT ||
+            (bound == MCTranspositionTable.LOWER && beta <= value) ||
+            (bound == MCTranspositionTable.UPPER && value <= alpha)) {
+          return value;
+        }
+      }
+    }
+    int[] buffer = moves[ply];
+    int n = MCMoveGenerator.generate(position.getBoard(), prevMove, prevScore, color, buffer);
+    if (n == 0) {
+      // the player can not move, and loses the game
+      return -WIN + diff;
+    }
+    orderMoves(buffer, keys[ply], n, ttMove);
+    int origAlpha = alpha;
+    int best = -INFINITY;
+    int bestMove = MCMove.NONE;
+    for (int i = 0; i < n; i++) {
+      int value = -child(buffer[i], depth, ply, -beta, -alpha, color, diff);
+      if (stopped) {
+        return 0;
+      }
+      if (best < value) {
+        best = value;
+        bestMove = buffer[i];
+        if (alpha < value) {
+          alpha = value;
+          if (beta <= alpha) {
+            break;
+          }
+        }
+      }
+    }
+    int bound = best <= origAlpha ? MCTranspositionTable.UPPER : beta <= best ? MCTranspositionTable.LOWER : MCTranspositionTable.EXACT;
+    table.store(key, bestMove, best, depth, bound);
+    return best;
+  }
+
+  /**
+   * Returns the value of a position of the tablebase. The final score
+   * difference of a finished game is estimated from the tablebase value, the
+   * result is exact.
+   */
+  private int solved(int color, int prevMove, int prevScore, int diff) {
+    int value = tablebase.probe(position.getBoard(), color, prevMove, prevScore);
+    if (value == MCTablebase.WIN) {
+      return WIN + diff;
+    } else if (value == MCTablebase.LOSS) {
+      return -WIN + diff;
+    } else if ((value & 1) == 0) {
+      // none of the players can finish the game after the captures
+      return diff + value / 2;
+    }
+    int result = 2 * diff + value;
+    return 0 < result ? WIN + (result + 1) / 2 : -WIN + (result - 1) / 2;
+  }
+
+  /**
+   * Searches the hits only, the player can stand pat with the current score.
+   */
+  private int quiesce(int ply, int alpha, int beta, int color, int diff) {
+    if (isTimeUp() || beta <= diff || MAX_PLY <= ply) {
+      return diff;
+    }
+    alpha = Math.max(alpha, diff);
+    int[] buffer = moves[ply];
+    // hits can not be reversed anyway
+    int n = MCMoveGenerator.generate(position.getBoard(), MCMove.NONE, 0, color, buffer);
+    int best = diff;
+    for (int i = 0; i < n; i++) {
+      int move = buffer[i];
+      int target = position.get(MCMove.to(move));
+      if (!isCross(move) || target == 0) {
+        continue;
+      }
+      position.apply(move);
+      int value;
+      if (position.getNumFigures(color) == 0) {
+        value = end(diff + target);
+      } else {
+        value = -quiesce(ply + 1, -beta, -alpha, 1 - color, -(diff + target));
+      }
+      position.undo(move, target);
+      if (best < value) {
+        best = value;
+        if (alpha < value) {
+          alpha = value;
+          if (beta <= alpha) {
+            break;
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Counts the node and checks the deadline, the abort and the interruption of
+   * the thread in every 1024 nodes.
+   */
+  private boolean isTimeUp() {
+    if ((++nodes & 1023) == 0 && (aborted || deadline.isHardExpired() || Thread.currentThread().isInterrupted())) {
+      stopped = true;
+    }
+    return stopped;
+  }
+
+  /**
+   * Orders the moves: the specified move first, then the hits by the value of
+   * the captured figure, then the other moves.
+   */
+  private void orderMoves(int[] buffer, int[] keys, int n, int first) {
+    for (int i = 0; i < n; i++) {
+      int move = buffer[i];
+      keys[i] = move == first ? 100 : isCross(move) ? 1 + position.get(MCMove.to(move)) * 10 : 0;
+    }
+    // insertion sort by decreasing key, stable for the generator order
+    for (int i = 1; i < n; i++) {
+      int move = buffer[i], key = keys[i];
+      int j = i - 1;
+      for (; 0 <= j && keys[j] < key; j--) {
+        buffer[j + 1] = buffer[j];
+        keys[j + 1] = keys[j];
+      }
+      buffer[j + 1] = move;
+      keys[j + 1] = key;
+    }
+  }
+
+  /**
+   * Returns the value of the finished game for the player that emptied its
+   * half, who gets a point more on a draw.
+   */
+  static int end(int diff) {
+    return 0 <= diff ? WIN + Math.max(diff, 1) : -WIN + diff;
+  }
+
+  static boolean isCross(int move) {
+    return MCBitboard.half(MCMove.from(move)) != MCBitboard.half(MCMove.to(move));
+  }
+}
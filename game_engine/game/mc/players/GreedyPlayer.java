@@ -24,7 +24,10 @@ import java.util.Random;
 import game.engine.utils.Pair;
 import game.mc.MCAction;
 import game.mc.MCGame;
+import game.mc.MCMove;
+import game.mc.MCMoveGenerator;
 import game.mc.MCPlayer;
+import game.mc.MCPosition;
 
 /**
  * Greedy player for the Matrian Chess game.
@@ -33,12 +36,15 @@ import game.mc.MCPlayer;
  */
 public class GreedyPlayer extends MCPlayer {
   
+  private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+  private final MCPosition position;
   private MCAction prevAction;
   private int myScore;
   private int enemyScore;
 
   public GreedyPlayer(int color, int[][] board, Random r) {
     super(color, board, r);
+    position = new MCPosition(board);
     myScore = 0;
     enemyScore = 0;
   }
@@ -61,35 +67,29 @@ public class GreedyPlayer extends MCPlayer {
         board[action.second.x2][action.second.y2] = board[action.second.x1][action.second.y1];
       }
       board[action.second.x1][action.second.y1] = MCGame.empty;
+      position.apply(MCMove.encode(action.second));
     }
     enemyScore += prevScore;
     int maxScore = 0;
     List<MCAction> actions = new LinkedList<MCAction>();
     // generate actions
-    for (int i = 4 * color; i < 4 * (color + 1); i++) {
-      for (int j = 0; j < 4; j++) {
-        if (board[i][j] != MCGame.empty) {
-          for (int i2 = 0; i2 < 8; i2++) {
-            for (int j2 = 0; j2 < 4; j2++) {
-              MCAction action = new MCAction(i, j, i2, j2);
-              int score = -1;
-              try {
-                score = score(board, prevAction, prevScore, color, action, myScore - enemyScore);
-              } catch (Exception e) {
-                System.out.println("ACTION: " + action);
-                e.printStackTrace();
-                System.exit(1);
-              }
-              if (maxScore < score) {
-                maxScore = score;
-                actions.clear();
-              }
-              if (maxScore == score) {
-                actions.add(action);
-              }
-            }
-          }
-        }
+    int numMoves = MCMoveGenerator.generate(position.getBoard(), MCMove.encode(prevAction), prevScore, color, moves);
+    for (int k = 0; k < numMoves; k++) {
+      MCAction action = MCAction.of(moves[k]);
+      int score = -1;
+      try {
+        score = score(board, prevAction, prevScore, color, action, myScore - enemyScore);
+      } catch (Exception e) {
+        System.out.println("ACTION: " + action);
+        e.printStackTrace();
+        System.exit(1);
+      }
+      if (maxScore < score) {
+        maxScore = score;
+        actions.clear();
+      }
+      if (maxScore == score) {
+        actions.add(action);
       }
     }
     MCAction action = actions.size() == 0 ? null : actions.get(r.nextInt(actions.size()));
@@ -99,13 +99,14 @@ public class GreedyPlayer extends MCPlayer {
       board[action.x2][action.y2] = board[action.x1][action.y1];
     }
     board[action.x1][action.y1] = MCGame.empty;
+    position.apply(MCMove.encode(action));
     myScore += maxScore;
     return action;
   }
   
   /**
    * Returns the score the specified action corresponds to the specified state.
-   * @param board current board
+   * @param board current board, the figures are counted by the position
    * @param prevAction previous action
    * @param prevScore score of the previous action
    * @param color color of the current player
@@ -114,20 +115,8 @@ public class GreedyPlayer extends MCPlayer {
    * @return score of the action.
    */
   private int score(int[][] board, MCAction prevAction, int prevScore, int color, MCAction action, int scoreDiff) {
-    int[][] figures = new int[2][3];
-    for (int i = 0; i < board.length; i++) {
-      for (int j = 0; j < board[i].length; j++) {
-        if (board[i][j] != MCGame.empty) {
-          if (i < board.length / 2) {
-            figures[0][board[i][j] - 1]++;
-          } else {
-            figures[1][board[i][j] - 1]++;
-          }
-        }
-      }
-    }
-    int numFigures = figures[color][0] + figures[color][1] + figures[color][2];
-    int score = MCGame.score(board, figures, prevAction, prevScore, color, action);
+    int numFigures = position.getNumFigures(color);
+    int score = MCGame.score(board, position.getFigures(), prevAction, prevScore, color, action);
     boolean samePart = (action.x1 < 4 && action.x2 < 4) || (4 <= action.x1 && 4 <= action.x2);
     if (0 <= score && !samePart && numFigures == 1) {
       if (scoreDiff < 0) {
@@ -20,15 +20,16 @@ package game.mc.players;
 import java.util.List;
 import java.util.Random;
 
+import game.engine.BlockingPlayer;
 import game.engine.utils.Pair;
 import game.mc.MCAction;
 import game.mc.MCPlayer;
 import game.mc.ui.GameGraphicsController;
 
 /**
- * Player for manual testing.
+ * Player for manual testing, it waits for the action of the user.
  */
-public class HumanPlayer extends MCPlayer {
+public class HumanPlayer extends MCPlayer implements BlockingPlayer {
 
   public HumanPlayer(int color, int[][] board, Random r) {
     super(color, board, r);
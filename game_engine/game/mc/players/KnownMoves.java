@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc.players;
+
+import game.mc.MCMove;
+import game.mc.MCOpeningBook;
+import game.mc.MCTablebase;
+
+/**
+ * Moves of the opening book and the endgame tablebase, that the players play
+ * without searching. The book and the tablebase are set by the
+ * {@link MCOpeningBook#PROPERTY} and the {@link MCTablebase#PROPERTY}
+ * properties, when the players are constructed.
+ */
+final class KnownMoves {
+
+  /** opening book, can be null */
+  private final MCOpeningBook book = MCOpeningBook.getDefault();
+  /** endgame tablebase, can be null */
+  private final MCTablebase tablebase = MCTablebase.getDefault();
+
+  /**
+   * Returns the book move, or the tablebase move if the book has no move for
+   * the specified position.
+   * @param board packed board
+   * @param color color of the player to move
+   * @param prevMove previous move or {@link MCMove#NONE}
+   * @param prevScore score of the previous move
+   * @return known move or {@link MCMove#NONE}
+   */
+  int choose(long board, int color, int prevMove, int prevScore) {
+    int move = book == null ? MCMove.NONE : book.choose(board, color, prevMove, prevScore, MCOpeningBook.DEFAULT_MIN_GAMES);
+    if (move == MCMove.NONE && tablebase != null) {
+      move = tablebase.choose(board, color, prevMove, prevScore);
+    }
+    return move;
+  }
+}
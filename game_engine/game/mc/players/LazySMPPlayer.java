@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc.players;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import game.engine.Deadline;
+import game.engine.DeadlineAware;
+import game.engine.PlayerClock;
+import game.engine.Engine;
+import game.engine.utils.CpuMeter;
+import game.engine.utils.Pair;
+import game.mc.MCAction;
+import game.mc.MCBitboard;
+import game.mc.MCMove;
+import game.mc.MCPlayer;
+import game.mc.MCPosition;
+import game.mc.MCTranspositionTable;
+
+/**
+ * Parallel alpha-beta player for the Martian Chess game (Lazy SMP).
+ * The thread of the engine and helper threads search the same position
+ * independently, and they share the results through a common lock-free
+ * transposition table. The helpers start at different depths, so they fill the
+ * table ahead of each other. The helper threads are created by the
+ * constructor, and they are stopped when the search of the engine thread is
+ * finished or interrupted. They are created by the factory of
+ * {@link CpuMeter}, so the engine can charge their CPU time to the player.
+ * The number of the threads is given by {@link Engine#getPlayerThreads()},
+ * and the helper threads are stopped when the engine closes the player.
+ * The moves of the opening book and the endgame tablebase, if they are set,
+ * are played without searching.
+ */
+public class LazySMPPlayer extends MCPlayer implements DeadlineAware, AutoCloseable {
+
+
+  private final MCPosition position;
+  private final MCTranspositionTable table = new MCTranspositionTable(32 << 20);
+  /** the search of the engine thread is the first one */
+  private final AlphaBetaSearch[] searches;
+  private final Helper[] helpers;
+  private final Future<?>[] futures;
+  private final ThreadPoolExecutor pool;
+  private final int[] scores = new int[2];
+  /** moves of the opening book and the endgame tablebase, if they are set */
+  private final KnownMoves knownMoves = new KnownMoves();
+  private int prevMove = MCMove.NONE;
+  private int prevScore = 0;
+  private final PlayerClock clock = new PlayerClock();
+
+  public LazySMPPlayer(int color, int[][] board, Random r) {
+    super(color, board, r);
+    position = new MCPosition(board);
+    int threads = Engine.getPlayerThreads();
+    searches = new AlphaBetaSearch[threads];
+    helpers = new Helper[threads - 1];
+    futures = new Future<?>[threads - 1];
+    for (int i = 0; i < threads; i++) {
+      searches[i] = new AlphaBetaSearch(table);
+    }
+    for (int i = 0; i < helpers.length; i++) {
+      helpers[i] = new Helper(searches[i + 1], 1 + ((i + 1) & 1));
+    }
+    // the meter is bound to the constructing thread only
+    final ThreadFactory factory = CpuMeter.threadFactory();
+    pool = helpers.length == 0 ? null : new ThreadPoolExecutor(helpers.length, helpers.length, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = factory.newThread(runnable);
+        thread.setName("LazySMPPlayer-helper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    if (pool != null) {
+      // the threads are started in the timed constructor, not in the first action
+      pool.prestartAllCoreThreads();
+    }
+  }
+
+  /**
+   * Stops the helper threads, the player can not compute actions after it.
+   */
+  @Override
+  public void close() {
+    for (int i = 1; i < searches.length; i++) {
+      searches[i].abort();
+    }
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
+  @Override
+  public void setDeadline(Deadline deadline) {
+    clock.setDeadline(deadline);
+  }
+
+  @Override
+  public MCAction getAction(List<Pair<Integer, MCAction>> prevActions) {
+    Deadline deadline = clock.start();
+    for (Pair<Integer, MCAction> action : prevActions) {
+      if (action.second != null) {
+        play(MCMove.encode(action.second));
+      }
+    }
+    // the helpers of an interrupted search may be still running
+    if (!awaitHelpers()) {
+      return null;
+    }
+    // book and tablebase moves are played without searching
+    int move = knownMoves.choose(position.getBoard(), color, prevMove, prevScore);
+    if (move == MCMove.NONE) {
+      move = search(deadline);
+    }
+    if (move != MCMove.NONE) {
+      play(move);
+    }
+    clock.end();
+    return MCMove.toAction(move);
+  }
+
+  /**
+   * Searches the best move within the time of the specified deadline.
+   * @return best move or {@link MCMove#NONE} if the thread is interrupted
+   */
+  private int search(Deadline deadline) {
+    deadline.setBudget(Deadline.RESERVE);
+    long board = position.getBoard();
+    int diff = scores[color] - scores[1 - color];
+    table.newSearch();
+    for (int i = 0; i < helpers.length; i++) {
+      helpers[i].set(board, color, prevMove, prevScore, diff, deadline);
+      futures[i] = pool.submit(helpers[i]);
+    }
+    try {
+      searches[0].search(board, color, prevMove, prevScore, diff, 1, deadline);
+    } finally {
+      for (int i = 1; i < searches.length; i++) {
+        searches[i].abort();
+      }
+    }
+    if (!awaitHelpers()) {
+      return MCMove.NONE;
+    }
+    // the best move of the deepest finished iteration
+    AlphaBetaSearch best = searches[0];
+    for (int i = 1; i < searches.length; i++) {
+      if (best.getCompletedDepth() < searches[i].getCompletedDepth()) {
+        best = searches[i];
+      }
+    }
+    return best.getBestMove();
+  }
+
+  /**
+   * Waits for the submitted helper searches.
+   * @return false if the thread is interrupted
+   */
+  private boolean awaitHelpers() {
+    for (int i = 0; i < futures.length; i++) {
+      if (futures[i] == null) {
+        continue;
+      }
+      try {
+        futures[i].get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+      futures[i] = null;
+    }
+    return true;
+  }
+
+  /**
+   * Applies the specified move of the next player on the board of the player.
+   */
+  private void play(int move) {
+    int mover = MCBitboard.half(MCMove.from(move));
+    int target = position.apply(move);
+    prevScore = AlphaBetaSearch.isCross(move) ? target : 0;
+    prevMove = move;
+    scores[mover] += prevScore;
+    MCBitboard.unpack(position.getBoard(), board);
+  }
+
+  /**
+   * Search of a helper thread, the parameters are set before the submission.
+   */
+  private static final class Helper implements Callable<Integer> {
+    private final AlphaBetaSearch search;
+    private final int firstDepth;
+    private long board;
+    private int color;
+    private int prevMove;
+    private int prevScore;
+    private int diff;
+    private Deadline deadline;
+
+    private Helper(AlphaBetaSearch search, int firstDepth) {
+      this.search = search;
+      this.firstDepth = firstDepth;
+    }
+
+    private void set(long board, int color, int prevMove, int prevScore, int diff, Deadline deadline) {
+      this.board = board;
+      this.color = color;
+      this.prevMove = prevMove;
+      this.prevScore = prevScore;
+      this.diff = diff;
+      this.deadline = deadline;
+      search.reset();
+    }
+
+    @Override
+    public Integer call() {
+      return search.search(board, color, prevMove, prevScore, diff, firstDepth, deadline);
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2008 University of Szeged
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+package game.mc.players;
+
+import java.util.List;
+import java.util.Random;
+
+import game.engine.Deadline;
+import game.engine.DeadlineAware;
+import game.engine.PlayerClock;
+import game.engine.utils.Pair;
+import game.mc.MCAction;
+import game.mc.MCBitboard;
+import game.mc.MCMove;
+import game.mc.MCMoveGenerator;
+import game.mc.MCPlayer;
+import game.mc.MCPosition;
+
+/**
+ * Monte-Carlo tree search (UCT) player for the Martian Chess game.
+ * The nodes of the tree are stored in primitive arrays, the children of a node
+ * are allocated next to each other. The arrays are allocated once with the
+ * capacity set by the {@link #PROPERTY} property, {@link #DEFAULT_CAPACITY}
+ * nodes by default, so they are not copied during a search. The tree is kept
+ * between the calls, the root is moved down by the previous actions. When the
+ * tree is more than half of the capacity, the subtree of the root is copied
+ * into a second set of arrays, that is allocated by the first copy.
+ * <p>
+ * The playouts are random games by the legal moves of {@link MCMoveGenerator},
+ * a playout that is longer than {@link #PLAYOUT_LIMIT} is won by the player with
+ * the higher score.
+ */
+public class MCTSPlayer extends MCPlayer implements DeadlineAware {
+
+  /** system property of the maximal number of the nodes of the tree */
+  public static final String PROPERTY = "game.mc.mcts.nodes";
+  /** default maximal number of the nodes of the tree, about 20 bytes each */
+  public static final int DEFAULT_CAPACITY = 1 << 21;
+  /** minimal number of the nodes of the tree */
+  private static final int MIN_CAPACITY = 1 << 16;
+  /** maximal number of moves of a playout */
+  private static final int PLAYOUT_LIMIT = 200;
+  /** exploration constant of the UCT formula */
+  private static final double EXPLORATION = Math.sqrt(2);
+
+  private final MCPosition position;
+  private final int[] scores = new int[2];
+  private int prevMove = MCMove.NONE;
+  private int prevScore = 0;
+  private final PlayerClock clock = new PlayerClock();
+
+  /** maximal number of the nodes of the tree */
+  private final int capacity = Math.max(MIN_CAPACITY, Integer.getInteger(PROPERTY, DEFAULT_CAPACITY));
+  private Tree tree = new Tree(capacity);
+  /** target of the compaction, it is allocated by the first one */
+  private Tree spare;
+  /** index of the root in the tree or -1 if the tree is empty */
+  private int root = -1;
+
+  // buffers of an iteration
+  private final MCPosition current = new MCPosition(0L);
+  private final int[] currentScores = new int[2];
+  private final int[] path = new int[PLAYOUT_LIMIT + 1];
+  private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+
+  public MCTSPlayer(int color, int[][] board, Random r) {
+    super(color, board, r);
+    position = new MCPosition(board);
+  }
+
+  @Override
+  public void setDeadline(Deadline deadline) {
+    clock.setDeadline(deadline);
+  }
+
+  @Override
+  public MCAction getAction(List<Pair<Integer, MCAction>> prevActions) {
+    Deadline deadline = clock.start();
+    for (Pair<Integer, MCAction> action : prevActions) {
+      if (action.second == null) {
+        root = -1;
+      } else {
+        play(MCMove.encode(action.second));
+      }
+    }
+    if (root < 0) {
+      tree.size = 0;
+      root = tree.add(MCMove.NONE);
+    } else if (capacity / 2 < tree.size) {
+      compact();
+    }
+    // the search is stopped by the soft limit only
+    deadline.setSoftLimit(deadline.getBudget(Deadline.RESERVE));
+    // one iteration is done at least, to expand the root
+    do {
+      iterate();
+    } while (!deadline.isSoftExpired() && !Thread.currentThread().isInterrupted());
+    int best = -1;
+    for (int i = 0; i < tree.count[root]; i++) {
+      int child = tree.first[root] + i;
+      if (best < 0 || tree.visits[best] < tree.visits[child]) {
+        best = child;
+      }
+    }
+    int move = best < 0 ? MCMove.NONE : tree.move[best];
+    if (move != MCMove.NONE) {
+      play(move);
+    }
+    clock.end();
+    return MCMove.toAction(move);
+  }
+
+  /**
+   * Applies the specified move of the next player on the board of the player,
+   * and moves the root of the tree to the child of the move.
+   */
+  private void play(int move) {
+    int mover = MCBitboard.half(MCMove.from(move));
+    int target = position.apply(move);
+    prevScore = AlphaBetaSearch.isCross(move) ? target : 0;
+    prevMove = move;
+    scores[mover] += prevScore;
+    MCBitboard.unpack(position.getBoard(), board);
+    if (0 <= root) {
+      int child = -1;
+      for (int i = 0; i < tree.count[root] && child < 0; i++) {
+        if (tree.move[tree.first[root] + i] == move) {
+          child = tree.first[root] + i;
+        }
+      }
+      root = child;
+    }
+  }
+
+  /**
+   * Selects a leaf by the UCT formula, expands it, plays a random game from it
+   * and updates the statistics of the nodes of the path.
+   */
+  private void iterate() {
+    current.set(position.getBoard());
+    currentScores[0] = scores[0];
+    currentScores[1] = scores[1];
+    int color = this.color;
+    int prevMove = this.prevMove;
+    int prevScore = this.prevScore;
+    int node = root;
+    int length = 0;
+    path[length++] = node;
+    int winner = -1;
+    boolean finished = false;
+    while (!finished && 0 <= tree.first[node] && length < path.length) {
+      if (tree.count[node] == 0) {
+        // the player can not move, and loses the game
+        winner = 1 - color;
+        finished = true;
+        break;
+      }
+      node = select(node);
+      path[length++] = node;
+      prevMove = tree.move[node];
+      prevScore = apply(prevMove);
+      if (current.getNumFigures(color) == 0) {
+        winner = winner(color);
+        finished = true;
+      }
+      color = 1 - color;
+    }
+    if (!finished && tree.first[node] < 0) {
+      expand(node, color, prevMove, prevScore);
+    }
+    if (!finished) {
+      winner = playout(color, prevMove, prevScore);
+    }
+    // the value of a node is counted for the player that moved into the node
+    int mover = 1 - color;
+    for (int i = length - 1; 0 <= i; i--) {
+      tree.visits[path[i]]++;
+      tree.wins[path[i]] += winner == mover ? 1 : winner < 0 ? 0.5f : 0;
+      mover = 1 - mover;
+    }
+  }
+
+  /**
+   * Returns the child of the specified node with the highest UCT value.
+   */
+  private int select(int node) {
+    int first = tree.first[node];
+    double logVisits = Math.log(Math.max(1, tree.visits[node]));
+    int best = first;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int child = first; child < first + tree.count[node]; child++) {
+      int visits = tree.visits[child];
+      if (visits == 0) {
+        return child;
+      }
+      double value = tree.wins[child] / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+      if (bestValue < value) {
+        bestValue = value;
+        best = child;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Adds the children of the specified node, if the tree is not full.
+   */
+  private void expand(int node, int color, int prevMove, int prevScore) {
+    int n = MCMoveGenerator.generate(current.getBoard(), prevMove, prevScore, color, moves);
+    if (capacity < tree.size + n) {
+      return;
+    }
+    tree.first[node] = tree.size;
+    tree.count[node] = n;
+    for (int i = 0; i < n; i++) {
+      tree.add(moves[i]);
+    }
+  }
+
+  /**
+   * Plays random moves from the current position.
+   * @return color of the winner or -1 if the playout is a draw
+   */
+  private int playout(int color, int prevMove, int prevScore) {
+    for (int i = 0; i < PLAYOUT_LIMIT; i++) {
+      int n = MCMoveGenerator.generate(current.getBoard(), prevMove, prevScore, color, moves);
+      if (n == 0) {
+        return 1 - color;
+      }
+      prevMove = moves[r.nextInt(n)];
+      prevScore = apply(prevMove);
+      if (current.getNumFigures(color) == 0) {
+        return winner(color);
+      }
+      color = 1 - color;
+    }
+    return currentScores[0] == currentScores[1] ? -1 : currentScores[0] < currentScores[1] ? 1 : 0;
+  }
+
+  /**
+   * Applies the specified move on the current position of the iteration.
+   * @return score of the move
+   */
+  private int apply(int move) {
+    int target = current.apply(move);
+    int score = AlphaBetaSearch.isCross(move) ? target : 0;
+    currentScores[MCBitboard.half(MCMove.from(move))] += score;
+    return score;
+  }
+
+  /**
+   * Returns the winner of the game, that is finished by the specified player,
+   * who gets a point more on a draw.
+   */
+  private int winner(int mover) {
+    return currentScores[mover] < currentScores[1 - mover] ? 1 - mover : mover;
+  }
+
+  /**
+   * Copies the subtree of the root into the spare tree, breadth-first, so the
+   * children of a node stay next to each other.
+   */
+  private void compact() {
+    if (spare == null) {
+      spare = new Tree(capacity);
+    }
+    spare.size = 0;
+    spare.copy(tree, root);
+    for (int i = 0; i < spare.size; i++) {
+      int origin = spare.first[i];
+      spare.first[i] = -1;
+      if (0 <= origin) {
+        spare.first[i] = spare.size;
+        for (int j = 0; j < spare.count[i]; j++) {
+          spare.copy(tree, origin + j);
+        }
+      }
+    }
+    Tree swap = tree;
+    tree = spare;
+    spare = swap;
+    root = 0;
+  }
+
+  /**
+   * Nodes of the search tree in primitive arrays.
+   */
+  private static final class Tree {
+    /** move into the node */
+    private final int[] move;
+    /** index of the first child or -1 if the node is not expanded */
+    private final int[] first;
+    /** number of the children */
+    private final int[] count;
+    private final int[] visits;
+    /** sum of the results for the player that moved into the node */
+    private final float[] wins;
+    private int size;
+
+    private Tree(int capacity) {
+      move = new int[capacity];
+      first = new int[capacity];
+      count = new int[capacity];
+      visits = new int[capacity];
+      wins = new float[capacity];
+    }
+
+    private int add(int move) {
+      this.move[size] = move;
+      first[size] = -1;
+      count[size] = 0;
+      visits[size] = 0;
+      wins[size] = 0;
+      return size++;
+    }
+
+    /**
+     * Appends a copy of the specified node, its first child is the index of
+     * the child in the specified tree.
+     */
+    private void copy(Tree tree, int node) {
+      move[size] = tree.move[node];
+      first[size] = tree.first[node];
+      count[size] = tree.count[node];
+      visits[size] = tree.visits[node];
+      wins[size] = tree.wins[node];
+      size++;
+    }
+  }
+}
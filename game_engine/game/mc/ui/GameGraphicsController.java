@@ -104,7 +104,7 @@ public class GameGraphicsController implements Initializable, EventHandler<Mouse
     int i = (int) Math.round(y / MCApplication.MULTIPLIER);
     int j = (int) Math.round(x / MCApplication.MULTIPLIER);
     if (clickI != -1 && clickJ != -1) {
-      MCAction action = new MCAction(clickI, clickJ, i, j);
+      MCAction action = MCAction.of(clickI, clickJ, i, j);
       boolean succes = QUEUE.offer(action);
       while (!succes) {
         QUEUE.clear();
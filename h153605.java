@@ -12,8 +12,12 @@
 
 import game.engine.utils.Pair;
 import game.mc.MCAction;
+import game.mc.MCBitboard;
 import game.mc.MCGame;
+import game.mc.MCMove;
+import game.mc.MCMoveGenerator;
 import game.mc.MCPlayer;
+import game.mc.MCPosition;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -61,6 +65,9 @@ public class h153605 extends MCPlayer {
     }
 
 
+    private final int[] moves = new int[MCMoveGenerator.MAX_MOVES];
+    private final int[] replies = new int[MCMoveGenerator.MAX_MOVES];
+    private final MCPosition position;
     private MCAction prevAction;
     private int myScore;
     private int enemyScore;
@@ -71,6 +78,7 @@ public class h153605 extends MCPlayer {
 
 // -----Inenntől
         super(color, board, r);
+        position = new MCPosition(board);
         myScore = 0;
         enemyScore = 0;
 
@@ -96,6 +104,7 @@ public class h153605 extends MCPlayer {
                 board[action.second.x2][action.second.y2] = board[action.second.x1][action.second.y1];
             }
             board[action.second.x1][action.second.y1] = MCGame.empty;
+            position.play(MCMove.encode(action.second));
         }
         enemyScore += prevScore;
         int maxScore = 0;
@@ -123,77 +132,72 @@ public class h153605 extends MCPlayer {
         /**
          *  generate actions, lehetséges lépések feltérképezése
          */
-        for (int i = 4 * color; i < 4 * (color + 1); i++) {
-            for (int j = 0; j < 4; j++) {
-                if (board[i][j] != MCGame.empty) {
-                    for (int i2 = 0; i2 < 8; i2++) {
-                        for (int j2 = 0; j2 < 4; j2++) {
-                            MCAction action = new MCAction(i, j, i2, j2);
-                            int score = -1;
-                            try {
-                                score = score(board, prevAction, prevScore, color, action, myScore - enemyScore);
-                            } catch (Exception e) {
-                                System.out.println("ACTION: " + action);
-                                e.printStackTrace();
-                                System.exit(1);
-                            }
-                            if (maxScore < score) {
-                                /**
-                                 * Ha van jobb akkor a többire nincs szükség
-                                 */
-                                maxScore = score;
-                                actions.clear();
-                            }
-
-                            if (maxScore == score) {
+        int numMoves = MCMoveGenerator.generate(position.getBoard(), MCMove.encode(prevAction), prevScore, color, moves);
+        for (int k = 0; k < numMoves; k++) {
+            int i = MCMove.x1(moves[k]), j = MCMove.y1(moves[k]);
+            int i2 = MCMove.x2(moves[k]), j2 = MCMove.y2(moves[k]);
+            MCAction action = MCAction.of(moves[k]);
+            int score = -1;
+            try {
+                score = score(moves[k], color, myScore - enemyScore);
+            } catch (Exception e) {
+                System.out.println("ACTION: " + action);
+                e.printStackTrace();
+                System.exit(1);
+            }
+            if (maxScore < score) {
+                /**
+                 * Ha van jobb akkor a többire nincs szükség
+                 */
+                maxScore = score;
+                actions.clear();
+            }
+
+            if (maxScore == score) {
 //-- Idáig megeggyezik a greedy-vel
-                                /**
-                                 *Saját térfél-e
-                                 */
-                                samePart = (action.x1 < 4 && action.x2 < 4) || (4 <= action.x1 && 4 <= action.x2);
-
-                                /**
-                                 *Ha saját térfél és üres akkor a könzönbös
-                                 */
-
-                                if (board[i2][j2] == MCGame.empty && samePart) cost = 0;
-
-                                /**
-                                 * Ha ellenfél térfele és üres, nem elönyös az elöző eset jobb ne adogassunk csak ugy oda bábukat
-                                 */
-                                if (board[i2][j2] == MCGame.empty && !samePart) cost = -1;
-
-                                /**
-                                 * Ha nem üres és ellen fél területe az már jó, de ezt is rakjuk hassznossági sorrendebe
-                                 * azért van a végén + 5 mert ekkor pozitiv marad  és ez jobb eset mintha a pl fentebbiek valamelyike
-                                 *
-                                  */
-
-                                if (board[i2][j2] != MCGame.empty && !samePart) cost = board[i2][j2] - board[i][j] + 5;
-
-                                /**
-                                 * A ellenfél mit lépne jelen pillanatba
-                                 */
-                                greedyStep = greedyAction(board, action, color, myScore, enemyScore);
-
-
-                                /**
-                                 * Ahova lépne a ellenfél azaz ütne ha ezt meglépjük
-                                 */
-                                if (greedyStep.x2 != i2 && greedyStep.y2 != j2)
-                                    actions.add(new ActionWithScore(action, cost));
-                                /**
-                                 * Menekülni kell mert az ellenfél le fogja ütni ezért magasabb prioritást élvez
-                                 */
-                                if (greedyStep.x2 == i && greedyStep.y2 == j)
-                                    cost=10;
-
-                                emergency.add(new ActionWithScore(action,cost));
-
-                            }
-                        }
-                    }
-                }
+                /**
+                 *Saját térfél-e
+                 */
+                samePart = (action.x1 < 4 && action.x2 < 4) || (4 <= action.x1 && 4 <= action.x2);
+
+                /**
+                 *Ha saját térfél és üres akkor a könzönbös
+                 */
+
+                if (board[i2][j2] == MCGame.empty && samePart) cost = 0;
+
+                /**
+                 * Ha ellenfél térfele és üres, nem elönyös az elöző eset jobb ne adogassunk csak ugy oda bábukat
+                 */
+                if (board[i2][j2] == MCGame.empty && !samePart) cost = -1;
+
+                /**
+                 * Ha nem üres és ellen fél területe az már jó, de ezt is rakjuk hassznossági sorrendebe
+                 * azért van a végén + 5 mert ekkor pozitiv marad  és ez jobb eset mintha a pl fentebbiek valamelyike
+                 *
+                  */
+
+                if (board[i2][j2] != MCGame.empty && !samePart) cost = board[i2][j2] - board[i][j] + 5;
+
+                /**
+                 * A ellenfél mit lépne jelen pillanatba
+                 */
+                greedyStep = greedyAction(moves[k], color, myScore, enemyScore);
+
+
+                /**
+                 * Ahova lépne a ellenfél azaz ütne ha ezt meglépjük
+                 */
+                if (greedyStep.x2 != i2 && greedyStep.y2 != j2)
+                    actions.add(new ActionWithScore(action, cost));
+                /**
+                 * Menekülni kell mert az ellenfél le fogja ütni ezért magasabb prioritást élvez
+                 */
+                if (greedyStep.x2 == i && greedyStep.y2 == j)
+                    cost=10;
+
+                emergency.add(new ActionWithScore(action,cost));
+
             }
         }
 
@@ -236,6 +240,7 @@ public class h153605 extends MCPlayer {
             board[action.x2][action.y2] = board[action.x1][action.y1];
         }
         board[action.x1][action.y1] = MCGame.empty;
+        position.play(MCMove.encode(action));
         myScore += maxScore;
 
         return action;
@@ -245,103 +250,55 @@ public class h153605 extends MCPlayer {
 
     /**
      * A Greedy Player várható lépésével tér vissza, ha le tud ütni akkor 100% pontos különben biznytalan
+     * A lépést a position-ön teszi meg és vonja vissza, a táblát nem másolja.
      *
-     * @param board         Éppen játszott tábla
-     * @param MyAction      Amit lépni szeretnék
+     * @param myMove        Amit lépni szeretnék
      * @param color         MElyik szinnel játszok
      * @param sscore        Játékban aktuális pontjaim száma
      * @param greedyscore   Ellen fél pontjai
      * @return Ellenfél váthaó lépése MCAction formában
      */
 
-    private MCAction greedyAction(int[][] board, MCAction MyAction, int color, int sscore, int greedyscore) {
+    private MCAction greedyAction(int myMove, int color, int sscore, int greedyscore) {
         // Szin megfordítás
         int calor = color == 1 ? 0 : 1;
-        int prevScore = 0;
 
-        // Tábla mosolás, ne az eredeti táblán lépjen
-        int[][] bord = new int[board.length][];
-        for (int i = 0; i < board.length; ++i) {
-            bord[i] = new int[board[i].length];
-            for (int j = 0; j < board[i].length; ++j) {
-                bord[i][j] = board[i][j];
-            }
-        }
-
-        MCAction prevAction = MyAction;
-        boolean samePart = (prevAction.x1 < 4 && prevAction.x2 < 4) || (4 <= prevAction.x1 && 4 <= prevAction.x2);
-        if (samePart) {
-            // merge / move
-            bord[prevAction.x2][prevAction.y2] += bord[prevAction.x1][prevAction.y1];
-        } else {
-            // capture / move
-            prevScore = bord[prevAction.x2][prevAction.y2];
-            bord[prevAction.x2][prevAction.y2] = bord[prevAction.x1][prevAction.y1];
-        }
-        bord[prevAction.x1][prevAction.y1] = MCGame.empty;
+        // Lépés a position-ön, utána visszavonjuk
+        int prevScore = position.make(myMove);
 
         greedyscore += prevScore;
         int maxiScore = 0;
         List<MCAction> aactions = new LinkedList<MCAction>();
         // generate actions
-        for (int i = 4 * calor; i < 4 * (calor + 1); i++) {
-            for (int j = 0; j < 4; j++) {
-                if (bord[i][j] != MCGame.empty) {
-                    for (int i2 = 0; i2 < 8; i2++) {
-                        for (int j2 = 0; j2 < 4; j2++) {
-                            MCAction aaction = new MCAction(i, j, i2, j2);
-                            int scorw = -1;
-                            try {
-                                scorw = score(bord, prevAction, prevScore, calor, aaction, greedyscore - sscore);
-                            } catch (Exception e) {
-                                System.out.println("ACTION: " + aaction);
-                                e.printStackTrace();
-                                System.exit(1);
-                            }
-                            if (maxiScore < scorw) {
-                                maxiScore = scorw;
-                                aactions.clear();
-                            }
-                            if (maxiScore == scorw) {
-                                aactions.add(aaction);
-                            }
-                        }
-                    }
-                }
+        int numMoves = position.generate(replies);
+        for (int k = 0; k < numMoves; k++) {
+            int scorw = score(replies[k], calor, greedyscore - sscore);
+            if (maxiScore < scorw) {
+                maxiScore = scorw;
+                aactions.clear();
+            }
+            if (maxiScore == scorw) {
+                aactions.add(MCAction.of(replies[k]));
             }
         }
         MCAction saction = aactions.size() == 0 ? null : aactions.get(r.nextInt(aactions.size()));
+        position.unmake();
         return saction;
     }
 
     /**
-     * Returns adott lépéshez kiszámítja a pontot valamint -1 ha helytelen a lépés
+     * Returns adott szabályos lépéshez kiszámítja a pontot a position alapján
      *
-     * @param board      aktuális tábla
-     * @param prevAction elöző lépés
-     * @param prevScore  elöző lépés pontja
+     * @param move       aktuális játékos lépése, a generátor adta
      * @param color      aktuális játékos színe
-     * @param action     aktuális játékos lépése
      * @param scoreDiff  saját és a ellenfél pont külnbsége
      * @return lépés pontja
      */
-    private int score(int[][] board, MCAction prevAction, int prevScore, int color, MCAction action, int scoreDiff) {
-        int[][] figures = new int[2][3];
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j] != MCGame.empty) {
-                    if (i < board.length / 2) {
-                        figures[0][board[i][j] - 1]++;
-                    } else {
-                        figures[1][board[i][j] - 1]++;
-                    }
-                }
-            }
-        }
-        int numFigures = figures[color][0] + figures[color][1] + figures[color][2];
-        int score = MCGame.score(board, figures, prevAction, prevScore, color, action);
-        boolean samePart = (action.x1 < 4 && action.x2 < 4) || (4 <= action.x1 && 4 <= action.x2);
-        if (0 <= score && !samePart && numFigures == 1) {
+    private int score(int move, int color, int scoreDiff) {
+        int numFigures = position.getNumFigures(color);
+        int score = position.score(move);
+        boolean samePart = MCBitboard.half(MCMove.from(move)) == MCBitboard.half(MCMove.to(move));
+        if (!samePart && numFigures == 1) {
             if (scoreDiff < 0) {
                 score = -1;
             } else {